@@ -4,6 +4,8 @@ import com.read.duolingo.enums.LanguageType;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.LocalDateTime;
+
 
 /**
  * 书籍实体类
@@ -29,10 +31,36 @@ public class OfflineTranslateTemp {
 
     private Integer progress;
 
+    /**
+     * 源文件大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 源文件内容的 SHA-256
+     */
+    private String sourceHash;
+
+    /**
+     * 翻译引擎
+     * @see com.read.duolingo.enums.TranslatorType
+     */
+    private String translatorType;
+
     /**
      * 书籍翻译目标语言
      * @see LanguageType
      */
     private String langCode;
 
+    /**
+     * 持有任务的节点
+     */
+    private String workerId;
+
+    /**
+     * 任务租约过期时间，持有节点需要在过期前续约
+     */
+    private LocalDateTime leaseExpireTime;
+
 }
@@ -0,0 +1,14 @@
+package com.read.duolingo.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum ExecutionMode {
+    PLATFORM("平台线程池"),
+    VIRTUAL("虚拟线程"),
+    ;
+    private final String desc;
+    ExecutionMode(String desc) {
+        this.desc = desc;
+    }
+}
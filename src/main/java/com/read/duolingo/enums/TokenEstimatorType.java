@@ -0,0 +1,14 @@
+package com.read.duolingo.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum TokenEstimatorType {
+    FAST("按字符类别加权估算，根据实际用量自动校准"),
+    BPE("cl100k BPE 精确计数"),
+    ;
+    private final String desc;
+    TokenEstimatorType(String desc) {
+        this.desc = desc;
+    }
+}
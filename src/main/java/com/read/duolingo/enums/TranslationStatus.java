@@ -7,7 +7,8 @@ public enum TranslationStatus {
     NOT_START(0, "未开始"),
     TRANSLATING(1, "翻译中"),
     COMPLETED(2, "已完成"),
-    FAILED(3, "翻译失败");
+    FAILED(3, "翻译失败"),
+    UPLOADING(4, "上传中");
     private final int value;
     private final String desc;
     TranslationStatus(int value, String desc) {
@@ -7,5 +7,7 @@ public enum TranslatorType {
     LOCAL_SEED_X,
     AZURE,
     GOOGLE,
+    // 按延迟和错误率自动选择引擎
+    AUTO,
     ;
 }
@@ -6,10 +6,14 @@ import jakarta.annotation.Resource;
 import org.springframework.stereotype.Repository;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 @Repository
 public class TranslateRepository{
 
+    // 离线翻译失败次数上限，超过后标记为翻译失败，不再重试
+    public static final int OFFLINE_MAX_FAIL_COUNT = 3;
+
     @Resource
     private OfflineTranslateTempMapper offlineTranslateTempMapper;
 
@@ -25,6 +29,13 @@ public class TranslateRepository{
         return offlineTranslateTempMapper.selectById(bookId);
     }
 
+    public List<OfflineTranslateTemp> findOfflineTranslateTempByIds(List<Long> ids) {
+        if(ids == null || ids.isEmpty()){
+            return List.of();
+        }
+        return offlineTranslateTempMapper.selectByIds(ids);
+    }
+
     public void updateOfflineTranslateTemp(OfflineTranslateTemp offlineTranslateTemp) {
         if(offlineTranslateTemp == null){
             return;
@@ -33,6 +44,33 @@ public class TranslateRepository{
     }
 
 
+    /**
+     * @return 任务已不再由 workerId 持有时返回 false
+     */
+    public boolean updateOfflineTranslateTempByWorker(OfflineTranslateTemp offlineTranslateTemp) {
+        if(offlineTranslateTemp == null || offlineTranslateTemp.getWorkerId() == null){
+            return false;
+        }
+        return offlineTranslateTempMapper.updateSelectiveByWorker(offlineTranslateTemp) > 0;
+    }
+
+    /**
+     * 批量更新进度，每个任务只在仍由 workerIds 中对应的租约持有时更新
+     */
+    public void batchUpdateOfflineTranslateTempProgress(Map<Long, String> workerIds, Map<Long, Integer> progresses) {
+        if(progresses == null || progresses.isEmpty()){
+            return;
+        }
+        offlineTranslateTempMapper.batchUpdateProgress(workerIds, progresses);
+    }
+
+    public OfflineTranslateTemp findCompletedOfflineTranslateTempBySource(String sourceHash, String langCode, String translatorType) {
+        if(sourceHash == null || sourceHash.isEmpty()){
+            return null;
+        }
+        return offlineTranslateTempMapper.selectCompletedBySource(sourceHash, langCode, translatorType);
+    }
+
     public OfflineTranslateTemp getOfflineTranslateTempByTranslationStatus(List<Integer> translationStatus) {
         if(translationStatus == null || translationStatus.isEmpty()){
             return null;
@@ -40,4 +78,60 @@ public class TranslateRepository{
         return offlineTranslateTempMapper.getByTranslationStatus(translationStatus);
     }
 
+    /**
+     * 领取最多 limit 个任务
+     * 先查出候选id，再逐个条件更新，更新成功的才算领取到
+     * 接管租约过期的任务计一次失败，失败次数超过 OFFLINE_MAX_FAIL_COUNT 的不再领取
+     * @param excludeIds 本节点仍在处理的任务，即使租约已过期也不再领取
+     * @param leaseIdSupplier 每次领取生成一个新的租约标识写入 worker_id，旧的租约之后的更新都不再生效
+     * @return 领取到的任务id -> 租约标识
+     */
+    public Map<Long, String> claimOfflineTranslateTemps(int limit, int leaseSeconds, Set<Long> excludeIds, Supplier<String> leaseIdSupplier) {
+        if(limit <= 0){
+            return Map.of();
+        }
+        // 多查一些候选，部分可能被其他节点抢先领取
+        List<Long> candidateIds = offlineTranslateTempMapper.listClaimableIds(limit * 2 + excludeIds.size(), OFFLINE_MAX_FAIL_COUNT);
+        Map<Long, String> claimed = new LinkedHashMap<>();
+        for (Long id : candidateIds) {
+            if (claimed.size() >= limit) {
+                break;
+            }
+            if (excludeIds.contains(id)) {
+                continue;
+            }
+            String leaseId = leaseIdSupplier.get();
+            if (offlineTranslateTempMapper.claim(id, leaseId, leaseSeconds, OFFLINE_MAX_FAIL_COUNT) > 0) {
+                claimed.put(id, leaseId);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * 租约过期且失败次数超过 OFFLINE_MAX_FAIL_COUNT 的任务标记为翻译失败，返回标记的条数
+     */
+    public int failExpiredOfflineTranslateTemps() {
+        return offlineTranslateTempMapper.failExpired(OFFLINE_MAX_FAIL_COUNT);
+    }
+
+    /**
+     * 上传中且超过 expireSeconds 没有更新的任务id
+     */
+    public List<Long> findStaleUploadingOfflineTranslateTempIds(long expireSeconds, int limit) {
+        return offlineTranslateTempMapper.listStaleUploadingIds(expireSeconds, limit);
+    }
+
+    /**
+     * 仍在上传中时标记为翻译失败
+     * @return 是否标记成功
+     */
+    public boolean failUploadingOfflineTranslateTemp(Long id) {
+        return offlineTranslateTempMapper.failUploading(id) > 0;
+    }
+
+    public boolean renewOfflineTranslateTempLease(Long id, String workerId, int leaseSeconds) {
+        return offlineTranslateTempMapper.renewLease(id, workerId, leaseSeconds) > 0;
+    }
+
 }
\ No newline at end of file
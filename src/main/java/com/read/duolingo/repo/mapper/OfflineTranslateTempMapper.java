@@ -5,6 +5,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Book数据访问接口
@@ -17,7 +18,32 @@ public interface OfflineTranslateTempMapper {
 
     OfflineTranslateTemp selectById(@Param("id") Long id);
 
+    List<OfflineTranslateTemp> selectByIds(@Param("ids") List<Long> ids);
+
     void updateSelective(OfflineTranslateTemp offlineTranslateTemp);
 
+    /**
+     * 只有任务仍由 workerId 持有时才更新，租约被其他节点接管后更新不生效
+     */
+    int updateSelectiveByWorker(OfflineTranslateTemp offlineTranslateTemp);
+
+    int batchUpdateProgress(@Param("workerIds") Map<Long, String> workerIds, @Param("progresses") Map<Long, Integer> progresses);
+
+    List<Long> listClaimableIds(@Param("limit") int limit, @Param("maxFailCount") int maxFailCount);
+
+    int claim(@Param("id") Long id, @Param("workerId") String workerId, @Param("leaseSeconds") int leaseSeconds,
+              @Param("maxFailCount") int maxFailCount);
+
+    int failExpired(@Param("maxFailCount") int maxFailCount);
+
+    List<Long> listStaleUploadingIds(@Param("expireSeconds") long expireSeconds, @Param("limit") int limit);
+
+    int failUploading(@Param("id") Long id);
+
+    int renewLease(@Param("id") Long id, @Param("workerId") String workerId, @Param("leaseSeconds") int leaseSeconds);
+
+    OfflineTranslateTemp selectCompletedBySource(@Param("sourceHash") String sourceHash, @Param("langCode") String langCode,
+                                                 @Param("translatorType") String translatorType);
+
     OfflineTranslateTemp getByTranslationStatus(@Param("translationStatus") List<Integer> translationStatus);
 }
\ No newline at end of file
@@ -5,26 +5,46 @@ import com.read.duolingo.enums.LanguageType;
 import com.read.duolingo.enums.TranslationStatus;
 import com.read.duolingo.enums.TranslatorType;
 import com.read.duolingo.repo.TranslateRepository;
+import com.read.duolingo.service.http.PooledHttpClient;
+import com.read.duolingo.service.memory.ChapterStore;
+import com.read.duolingo.service.memory.JobCheckpoint;
+import com.read.duolingo.service.memory.StoreLockedException;
+import com.read.duolingo.service.memory.TranslationMemory;
+import com.read.duolingo.service.progress.ProgressTracker;
+import com.read.duolingo.service.scheduler.JobLease;
 import com.read.duolingo.service.translators.Translator;
 import com.read.duolingo.utils.FutureUtil;
 import com.read.duolingo.utils.HtmlUtil;
+import com.read.duolingo.utils.SingleFlight;
+import com.read.duolingo.utils.StringUtil;
 import com.read.duolingo.utils.ZipUtil;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Conditional;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -34,71 +54,151 @@ public class TranslateService {
     private TranslateRepository translateRepository;
     @Resource
     private List<Translator> translators;
+    @Resource
+    private TranslationMemory translationMemory;
+    @Resource
+    private PooledHttpClient pooledHttpClient;
+    @Resource
+    private ProgressTracker progressTracker;
+    @Resource
+    private ChapterStore chapterStore;
 
 
     private static final String TRANSLATION = System.getProperty("user.dir") + "/translation";
     private static final TranslatorType offlineTranslateUseTranslatorType = TranslatorType.LOCAL_SEED_X;
 
-    private final ThreadPoolTaskExecutor offlineLlmTaskExecutor = new ThreadPoolTaskExecutor();
-    {
-        offlineLlmTaskExecutor.setCorePoolSize(20);
-        offlineLlmTaskExecutor.setMaxPoolSize(20);
-        offlineLlmTaskExecutor.setQueueCapacity(0);
-        offlineLlmTaskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
-        offlineLlmTaskExecutor.initialize();
-    }
+    /**
+     * 一本书同时处理的章节数
+     */
+    @Value("${translate.offline.chapter-parallelism:4}")
+    private int chapterParallelism;
 
     /**
-     * 离线翻译任务
+     * 章节内每次翻译并写入断点的段落数，同时也是进度更新的粒度
      */
-    //    @Scheduled(fixedDelay = 1000)
-    public void offlineTranslate() {
-        // 获取翻译任务
-        OfflineTranslateTemp offlineTranslateTemp = translateRepository.getOfflineTranslateTempByTranslationStatus(List.of(TranslationStatus.NOT_START.getValue()));
-        if (offlineTranslateTemp == null) {
-            return;
-        }
-        // 离线翻译
-        offlineLlmTaskExecutor.execute(() -> offlineTranslate(offlineTranslateTemp));
-    }
+    @Value("${translate.offline.slice-size:64}")
+    private int sliceSize;
+
+    @Value("${translate.upload.max-file-bytes:2147483648}")
+    private long uploadMaxFileBytes;
 
+    @Value("${translate.upload.max-chunk-bytes:16777216}")
+    private long uploadMaxChunkBytes;
 
+    @Value("${translate.upload.expire-seconds:86400}")
+    private long uploadExpireSeconds;
 
-    private void offlineTranslate(OfflineTranslateTemp offlineTranslateTemp) {
-        if (offlineTranslateTemp == null || !Objects.equals(offlineTranslateTemp.getTranslationStatus(), TranslationStatus.NOT_START.getValue())) {
+    private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+    private static final String UPLOAD_PART_SUFFIX = ".part";
+    private static final int UPLOAD_EXPIRE_BATCH = 100;
+
+    // 正在翻译的文本，相同 (原文, langCode, TranslatorType, 在线/离线) 的并发请求共用一次引擎调用
+    private final SingleFlight<String, String> inFlightTranslations = new SingleFlight<>();
+    private final AtomicLong batchDuplicates = new AtomicLong();
+
+    // 分片上传中的任务，按顺序追加时增量计算哈希，重启后首次追加时从已上传部分重新计算
+    private final Map<Long, UploadState> uploadStates = new ConcurrentHashMap<>();
+
+    /**
+     * 离线翻译一本书，调用前任务已由调度器领取（翻译中且持有租约）
+     * 所有状态更新都带 workerId 条件，租约被其他节点接管后本节点的更新不再生效
+     */
+    public void offlineTranslate(OfflineTranslateTemp offlineTranslateTemp, JobLease lease) {
+        if (offlineTranslateTemp == null || !Objects.equals(offlineTranslateTemp.getTranslationStatus(), TranslationStatus.TRANSLATING.getValue())
+                || !Objects.equals(offlineTranslateTemp.getWorkerId(), lease.getWorkerId())) {
             return;
         }
-        offlineTranslateTemp.setTranslationStatus(TranslationStatus.TRANSLATING.getValue());
-        translateRepository.updateOfflineTranslateTemp(offlineTranslateTemp);
-        Path tempDir = null;
+        Path targetTempFile = null;
+        JobCheckpoint checkpoint = null;
+        boolean completed = false;
         try {
-            tempDir = Files.createTempDirectory("translate_temp");
-            // 解压 EPUB 文件
-            ZipUtil.unzipEpub(getFileDir(offlineTranslateTemp.getId(), true) + offlineTranslateTemp.getFileName(), tempDir);
-            // 处理 HTML 文件
-            HtmlUtil.processHtmlFiles(tempDir, (progress, sources) -> {
-                List<String> targets = translateSource(sources, offlineTranslateTemp.getLangCode(), false, offlineTranslateUseTranslatorType.name());
-                offlineTranslateTemp.setProgress(progress);
-                translateRepository.updateOfflineTranslateTemp(offlineTranslateTemp);
-                return targets;
+            // 加载断点，重试或重启后跳过已经翻译过的段落
+            checkpoint = JobCheckpoint.open(getCheckpointPath(offlineTranslateTemp.getId()));
+            JobCheckpoint jobCheckpoint = checkpoint;
+            Path targetPath = Paths.get(getFileDir(offlineTranslateTemp.getId(), false), offlineTranslateTemp.getFileName());
+            Files.createDirectories(targetPath.getParent());
+            // 临时文件带上 workerId，租约被接管时新旧节点不会互相覆盖或删除
+            targetTempFile = targetPath.resolveSibling(offlineTranslateTemp.getFileName() + "." + lease.getWorkerId() + ".tmp");
+            String sourcePath = getFileDir(offlineTranslateTemp.getId(), true) + offlineTranslateTemp.getFileName();
+            // 进度按已完成的 HTML 字节数计算，由 ProgressTracker 定时批量写回
+            ProgressTracker.JobProgress jobProgress = progressTracker.start(offlineTranslateTemp.getId(), lease.getWorkerId(),
+                    ZipUtil.sumEntrySizes(sourcePath, HtmlUtil::isHtmlFile), Optional.ofNullable(offlineTranslateTemp.getProgress()).orElse(0));
+            // 流式处理 EPUB：只翻译 HTML 文件，直接写入目标压缩包
+            // 内容没变的章节直接复用之前的译文
+            HtmlUtil.ChapterCache chapterCache = chapterStore.forJob(offlineTranslateTemp.getLangCode(), offlineTranslateUseTranslatorType);
+            HtmlUtil.processEpub(sourcePath, targetTempFile.toString(), chapterParallelism, sliceSize, jobProgress::add, chapterCache, (progress, sources) -> {
+                lease.checkValid();
+                return translateWithCheckpoint(jobCheckpoint, sources, offlineTranslateTemp.getLangCode());
             });
-            // 重新压缩为 EPUB
-            ZipUtil.zipEpub(tempDir, getFileDir(offlineTranslateTemp.getId(), false) + offlineTranslateTemp.getFileName());
+            lease.checkValid();
+            Files.move(targetTempFile, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
             offlineTranslateTemp.setTranslationStatus(TranslationStatus.COMPLETED.getValue());
             offlineTranslateTemp.setProgress(100);
-            translateRepository.updateOfflineTranslateTemp(offlineTranslateTemp);
+            completed = translateRepository.updateOfflineTranslateTempByWorker(offlineTranslateTemp);
+        } catch (StoreLockedException e) {
+            // 断点被锁说明租约过期的旧节点还在翻译这本书，放回队列等旧节点退出后再领取，不计失败次数
+            log.warn("离线翻译断点被占用，稍后重试, id:{}, {}", offlineTranslateTemp.getId(), e.getMessage());
+            offlineTranslateTemp.setTranslationStatus(TranslationStatus.NOT_START.getValue());
+            offlineTranslateTemp.setProgress(null);
+            translateRepository.updateOfflineTranslateTempByWorker(offlineTranslateTemp);
         } catch (Exception e) {
             log.error("离线翻译书籍失败", e);
             // 重试
             offlineTranslateTemp.setTranslationStatus(TranslationStatus.NOT_START.getValue());
-            if(Optional.ofNullable(offlineTranslateTemp.getFailCount()).orElse(0) > 3){
+            if(Optional.ofNullable(offlineTranslateTemp.getFailCount()).orElse(0) > TranslateRepository.OFFLINE_MAX_FAIL_COUNT){
                 offlineTranslateTemp.setTranslationStatus(TranslationStatus.FAILED.getValue());
             }
             offlineTranslateTemp.setFailCount(Optional.ofNullable(offlineTranslateTemp.getFailCount()).orElse(0) + 1);
-            translateRepository.updateOfflineTranslateTemp(offlineTranslateTemp);
+            // 进度已由 ProgressTracker 写回，这里不覆盖
+            offlineTranslateTemp.setProgress(null);
+            translateRepository.updateOfflineTranslateTempByWorker(offlineTranslateTemp);
         } finally {
-            // 清理临时文件
-            deleteDirectory(tempDir);
+            progressTracker.finish(offlineTranslateTemp.getId());
+            // 清理未完成的临时文件
+            deleteFile(targetTempFile);
+            closeCheckpoint(checkpoint);
+            // 翻译完成后断点不再需要，失败时保留给下次重试
+            if (completed) {
+                deleteDirectory(getCheckpointPath(offlineTranslateTemp.getId()).getParent());
+            }
+        }
+    }
+
+    /**
+     * 先查断点，只翻译断点中没有的段落，翻译结果写入断点
+     */
+    private List<String> translateWithCheckpoint(JobCheckpoint checkpoint, List<String> sources, String langCode) {
+        List<String> targets = new ArrayList<>(sources.size());
+        List<Integer> missIndexes = new ArrayList<>();
+        List<String> missSources = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            String target = checkpoint.get(sources.get(i));
+            targets.add(target);
+            if (target == null) {
+                missIndexes.add(i);
+                missSources.add(sources.get(i));
+            }
+        }
+        if (missSources.isEmpty()) {
+            return targets;
+        }
+        List<String> missTargets = translateSource(missSources, langCode, false, offlineTranslateUseTranslatorType.name());
+        for (int i = 0; i < missIndexes.size(); i++) {
+            targets.set(missIndexes.get(i), missTargets.get(i));
+            checkpoint.put(missSources.get(i), missTargets.get(i));
+        }
+        checkpoint.flush();
+        return targets;
+    }
+
+    private void closeCheckpoint(JobCheckpoint checkpoint) {
+        if (checkpoint == null) {
+            return;
+        }
+        try {
+            checkpoint.close();
+        } catch (IOException e) {
+            log.error("关闭翻译断点失败", e);
         }
     }
 
@@ -110,31 +210,328 @@ public class TranslateService {
         LanguageType.valueOfLangCode(langCode);
         // 校验translator
         Translator realTranslator = translators.stream().filter(t -> t.getTranslatorType().name().equals(translator)).findFirst().orElseThrow(() -> new IllegalArgumentException("translator is not support"));
-        // 使用seed-x翻译
-        List<String> targets = realTranslator.translate(sourceList, langCode, isOnline);
-        log.info("翻译结果translateResult: {}", targets);
+        TranslatorType translatorType = realTranslator.getTranslatorType();
+        // 先查翻译记忆，只把未命中的文本交给翻译引擎
+        // 未命中的文本按归一化原文去重，同一批内重复的段落（章节标题、对话标签、分隔符等）只翻译一次
+        List<String> targets = new ArrayList<>(sourceList.size());
+        Map<String, List<Integer>> missIndexes = new LinkedHashMap<>();
+        int missCount = 0;
+        for (int i = 0; i < sourceList.size(); i++) {
+            String cached = translationMemory.get(sourceList.get(i), langCode, translatorType);
+            targets.add(cached);
+            if (cached == null) {
+                missIndexes.computeIfAbsent(buildFlightKey(sourceList.get(i), langCode, translatorType, isOnline), k -> new ArrayList<>()).add(i);
+                missCount++;
+            }
+        }
+        if (!missIndexes.isEmpty()) {
+            batchDuplicates.addAndGet(missCount - missIndexes.size());
+            Map<String, String> missTargets = translateMisses(realTranslator, sourceList, missIndexes, langCode, isOnline);
+            missIndexes.forEach((key, indexes) -> indexes.forEach(i -> targets.set(i, missTargets.get(key))));
+        }
+        log.info("翻译结果translateResult: {}, 命中翻译记忆: {}/{}, 批内重复: {}", targets, sourceList.size() - missCount, sourceList.size(),
+                missCount - missIndexes.size());
         return targets;
     }
 
+    /**
+     * 翻译未命中翻译记忆的文本，每个key取第一次出现的原文
+     * 其他请求正在翻译的相同文本不再重复发给引擎，等对方的结果；其余文本合成一批交给引擎
+     */
+    private Map<String, String> translateMisses(Translator translator, List<String> sourceList, Map<String, List<Integer>> missIndexes,
+                                                String langCode, boolean isOnline) {
+        TranslatorType translatorType = translator.getTranslatorType();
+        Map<String, String> results = new HashMap<>();
+        List<String> leaderKeys = new ArrayList<>();
+        List<String> leaderSources = new ArrayList<>();
+        List<CompletableFuture<String>> leaderFlights = new ArrayList<>();
+        List<String> followerKeys = new ArrayList<>();
+        List<CompletableFuture<String>> followerFlights = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> entry : missIndexes.entrySet()) {
+            CompletableFuture<String> flight = new CompletableFuture<>();
+            CompletableFuture<String> existing = inFlightTranslations.join(entry.getKey(), flight);
+            if (existing == null) {
+                leaderKeys.add(entry.getKey());
+                leaderSources.add(sourceList.get(entry.getValue().get(0)));
+                leaderFlights.add(flight);
+            } else {
+                followerKeys.add(entry.getKey());
+                followerFlights.add(existing);
+            }
+        }
+        try {
+            if (!leaderSources.isEmpty()) {
+                List<String> leaderTargets = translator.translateBatch(leaderSources, langCode, isOnline);
+                if (leaderTargets.size() != leaderSources.size()) {
+                    throw new IllegalStateException("翻译结果数量与原文数量不一致, expect:" + leaderSources.size() + ", actual:" + leaderTargets.size());
+                }
+                for (int i = 0; i < leaderKeys.size(); i++) {
+                    String target = leaderTargets.get(i);
+                    results.put(leaderKeys.get(i), target);
+                    // 先写翻译记忆再结束，之后到达的请求直接命中记忆
+                    translationMemory.put(leaderSources.get(i), langCode, translatorType, target);
+                    inFlightTranslations.complete(leaderKeys.get(i), leaderFlights.get(i), target);
+                }
+            }
+        } finally {
+            // 翻译失败时也要结束，等待中的请求拿到 null
+            for (int i = 0; i < leaderKeys.size(); i++) {
+                inFlightTranslations.complete(leaderKeys.get(i), leaderFlights.get(i), null);
+            }
+        }
+        List<String> followerTargets = FutureUtil.collectFutures(followerFlights);
+        for (int i = 0; i < followerKeys.size(); i++) {
+            results.put(followerKeys.get(i), followerTargets.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * key 带上在线/离线：离线请求走低优先级、整批完成后才返回，在线请求跟随离线请求会被拖慢（优先级反转）
+     */
+    private static String buildFlightKey(String source, String langCode, TranslatorType translatorType, boolean isOnline) {
+        return (isOnline ? "online" : "offline") + "\u0001" + translatorType.name() + "\u0001" + langCode + "\u0001" + StringUtil.normalizeWhitespace(source);
+    }
+
+    /**
+     * 在线流式翻译，增量译文回调给 onDelta，返回的 future 在译文全部输出后完成
+     * 命中翻译记忆时一次性回调完整译文
+     */
+    public CompletableFuture<Void> streamTranslate(String source, String langCode, String translator, Consumer<String> onDelta) {
+        // 校验langCode
+        LanguageType.valueOfLangCode(langCode);
+        // 校验translator
+        Translator realTranslator = translators.stream().filter(t -> t.getTranslatorType().name().equals(translator)).findFirst().orElseThrow(() -> new IllegalArgumentException("translator is not support"));
+        TranslatorType translatorType = realTranslator.getTranslatorType();
+        String cached = translationMemory.get(source, langCode, translatorType);
+        if (cached != null) {
+            onDelta.accept(cached);
+            return CompletableFuture.completedFuture(null);
+        }
+        return realTranslator.asyncStreamTranslate(source, langCode, onDelta)
+                .thenAccept(target -> translationMemory.put(source, langCode, translatorType, target));
+    }
+
+    /**
+     * 运行指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("translationMemory", translationMemory.getStats());
+        metrics.put("chapterStore", chapterStore.getStats());
+        Map<String, Object> dedup = new LinkedHashMap<>(inFlightTranslations.getStats());
+        dedup.put("batchDuplicates", batchDuplicates.get());
+        metrics.put("dedup", dedup);
+        metrics.put("httpPool", pooledHttpClient.getStats());
+        translators.forEach(translator -> {
+            Map<String, Object> stats = translator.getStats();
+            if (!stats.isEmpty()) {
+                metrics.put(translator.getTranslatorType().name(), stats);
+            }
+        });
+        return metrics;
+    }
+
     public Long submitOfflineTranslate(String langCode, MultipartFile file) {
         // 校验langCode
         LanguageType.valueOfLangCode(langCode);
+        if(file == null) {
+            throw new RuntimeException("文件不能为空");
+        }
+        String fileName = sanitizeFileName(file.getOriginalFilename());
+        // 上传完成前是上传中状态，不会被调度领取
         OfflineTranslateTemp offlineTranslateTemp = new OfflineTranslateTemp();
-        offlineTranslateTemp.setTranslationStatus(TranslationStatus.NOT_START.getValue());
+        offlineTranslateTemp.setTranslationStatus(TranslationStatus.UPLOADING.getValue());
         offlineTranslateTemp.setLangCode(langCode);
+        offlineTranslateTemp.setTranslatorType(offlineTranslateUseTranslatorType.name());
         offlineTranslateTemp.setProgress(0);
         Long offlineTranslateTempId = translateRepository.insertOfflineTranslateTemp(offlineTranslateTemp);
-        String fileName = upload(offlineTranslateTempId, file, true);
-        offlineTranslateTemp.setFileName(fileName);
-        translateRepository.updateOfflineTranslateTemp(offlineTranslateTemp);
+        Path target = Paths.get(getFileDir(offlineTranslateTempId, true), fileName);
+        Path part = target.resolveSibling(fileName + UPLOAD_PART_SUFFIX);
+        try (InputStream in = file.getInputStream()) {
+            Files.createDirectories(target.getParent());
+            MessageDigest digest = newUploadDigest();
+            long size;
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                size = copyWithDigest(in, channel, digest, uploadMaxFileBytes);
+            }
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            offlineTranslateTemp.setFileName(fileName);
+            offlineTranslateTemp.setFileSize(size);
+            offlineTranslateTemp.setSourceHash(HexFormat.of().formatHex(digest.digest()));
+        } catch (IOException e) {
+            deleteFile(part);
+            // 上传失败的任务不会再完成，标记为翻译失败，避免一直停留在上传中
+            OfflineTranslateTemp failed = new OfflineTranslateTemp();
+            failed.setId(offlineTranslateTempId);
+            failed.setTranslationStatus(TranslationStatus.FAILED.getValue());
+            translateRepository.updateOfflineTranslateTemp(failed);
+            throw new UncheckedIOException("文件上传失败", e);
+        }
+        submitUploaded(offlineTranslateTemp);
         // 保存到书籍
         return offlineTranslateTempId;
     }
 
+    /**
+     * 分片上传：创建任务
+     * @param fileSize 文件总大小
+     */
+    public Long initChunkedUpload(String langCode, String fileName, long fileSize) {
+        // 校验langCode
+        LanguageType.valueOfLangCode(langCode);
+        if (fileSize <= 0 || fileSize > uploadMaxFileBytes) {
+            throw new IllegalArgumentException("文件大小不合法, fileSize:" + fileSize + ", max:" + uploadMaxFileBytes);
+        }
+        OfflineTranslateTemp offlineTranslateTemp = new OfflineTranslateTemp();
+        offlineTranslateTemp.setTranslationStatus(TranslationStatus.UPLOADING.getValue());
+        offlineTranslateTemp.setLangCode(langCode);
+        offlineTranslateTemp.setTranslatorType(offlineTranslateUseTranslatorType.name());
+        offlineTranslateTemp.setProgress(0);
+        offlineTranslateTemp.setFileName(sanitizeFileName(fileName));
+        offlineTranslateTemp.setFileSize(fileSize);
+        return translateRepository.insertOfflineTranslateTemp(offlineTranslateTemp);
+    }
+
+    /**
+     * 分片上传：查询已上传的字节数，断线后从这里继续
+     */
+    public long getUploadedSize(Long offlineTranslateTempId) {
+        OfflineTranslateTemp offlineTranslateTemp = getUploadingTemp(offlineTranslateTempId);
+        try {
+            Path part = getUploadPartPath(offlineTranslateTemp);
+            return Files.exists(part) ? Files.size(part) : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 分片上传：在 offset 处追加一个分片
+     * offset 与已上传大小不一致时（重复发送或跳过了分片）不写入，直接返回已上传大小，客户端从返回值继续
+     * @return 追加后已上传的字节数
+     */
+    public long appendUploadChunk(Long offlineTranslateTempId, long offset, InputStream in) {
+        OfflineTranslateTemp offlineTranslateTemp = getUploadingTemp(offlineTranslateTempId);
+        Path part = getUploadPartPath(offlineTranslateTemp);
+        UploadState state = uploadStates.computeIfAbsent(offlineTranslateTempId, k -> new UploadState());
+        synchronized (state) {
+            state.lastAccessMillis = System.currentTimeMillis();
+            try {
+                Files.createDirectories(part.getParent());
+                try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    long uploaded = channel.size();
+                    if (offset != uploaded) {
+                        return uploaded;
+                    }
+                    if (state.digestedBytes != uploaded) {
+                        // 进程重启或上次分片中断，从已上传部分重新计算哈希
+                        state.rehash(part, uploaded);
+                    }
+                    long limit = Math.min(uploadMaxChunkBytes, offlineTranslateTemp.getFileSize() - uploaded);
+                    channel.position(uploaded);
+                    try {
+                        copyWithDigest(in, channel, state.digest, limit);
+                    } finally {
+                        state.digestedBytes = channel.size();
+                    }
+                    return channel.size();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("分片上传失败", e);
+            }
+        }
+    }
+
+    /**
+     * 分片上传：全部分片上传完成，校验大小和哈希后提交翻译
+     * @param sha256 客户端计算的哈希，为空时不校验
+     */
+    public void completeChunkedUpload(Long offlineTranslateTempId, String sha256) {
+        OfflineTranslateTemp offlineTranslateTemp = getUploadingTemp(offlineTranslateTempId);
+        Path part = getUploadPartPath(offlineTranslateTemp);
+        UploadState state = uploadStates.computeIfAbsent(offlineTranslateTempId, k -> new UploadState());
+        synchronized (state) {
+            try {
+                long uploaded = Files.exists(part) ? Files.size(part) : 0;
+                if (uploaded != offlineTranslateTemp.getFileSize()) {
+                    throw new IllegalStateException("文件未上传完成, uploaded:" + uploaded + ", fileSize:" + offlineTranslateTemp.getFileSize());
+                }
+                if (state.digestedBytes != uploaded) {
+                    state.rehash(part, uploaded);
+                }
+                String sourceHash = HexFormat.of().formatHex(state.digest.digest());
+                if (StringUtils.isNotBlank(sha256) && !sha256.equalsIgnoreCase(sourceHash)) {
+                    // 内容损坏，丢弃已上传部分，客户端需要重新上传
+                    deleteFile(part);
+                    throw new IllegalStateException("文件校验失败, expect:" + sha256 + ", actual:" + sourceHash);
+                }
+                Files.move(part, Paths.get(getFileDir(offlineTranslateTempId, true), offlineTranslateTemp.getFileName()),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                offlineTranslateTemp.setSourceHash(sourceHash);
+                submitUploaded(offlineTranslateTemp);
+            } catch (IOException e) {
+                throw new UncheckedIOException("完成分片上传失败", e);
+            } finally {
+                uploadStates.remove(offlineTranslateTempId);
+            }
+        }
+    }
+
+    /**
+     * 清理被放弃的上传
+     * 1. 上传中的任务超过 expire-seconds 没有更新、源文件目录下的 .part 也超过 expire-seconds 没有写入：标记为翻译失败，删除 .part
+     * 2. 本节点超过 expire-seconds 没有追加分片的上传状态直接移除，任务仍在上传时下次追加会重新计算哈希
+     */
+    @Scheduled(fixedDelayString = "${translate.upload.expire-sweep-interval-millis:600000}")
+    public void expireStaleUploads() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(uploadExpireSeconds);
+        uploadStates.values().removeIf(state -> state.lastAccessMillis < expireBefore);
+        List<Long> staleIds;
+        try {
+            staleIds = translateRepository.findStaleUploadingOfflineTranslateTempIds(uploadExpireSeconds, UPLOAD_EXPIRE_BATCH);
+        } catch (Exception e) {
+            log.error("查询过期的上传任务失败", e);
+            return;
+        }
+        for (Long id : staleIds) {
+            try {
+                List<Path> parts = listUploadParts(id);
+                boolean active = false;
+                for (Path part : parts) {
+                    active |= Files.getLastModifiedTime(part).toMillis() >= expireBefore;
+                }
+                if (active || !translateRepository.failUploadingOfflineTranslateTemp(id)) {
+                    continue;
+                }
+                parts.forEach(this::deleteFile);
+                uploadStates.remove(id);
+                log.info("上传任务超时未完成，标记为翻译失败, id:{}", id);
+            } catch (Exception e) {
+                log.error("清理过期的上传任务失败, id:{}", id, e);
+            }
+        }
+    }
+
+    private List<Path> listUploadParts(Long offlineTranslateTempId) throws IOException {
+        Path dir = Paths.get(getFileDir(offlineTranslateTempId, true));
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(UPLOAD_PART_SUFFIX)).toList();
+        }
+    }
+
     public Integer queryOfflineTranslateResult(Long offlineTranslateTempId) {
         if (offlineTranslateTempId == null) {
             throw new IllegalArgumentException("offlineTranslateTempId is null");
         }
+        // 本节点正在处理的任务直接读内存中的最新进度
+        Integer progress = progressTracker.getProgress(offlineTranslateTempId);
+        if (progress != null) {
+            return progress;
+        }
         OfflineTranslateTemp offlineTranslateTemp = translateRepository.findOfflineTranslateTempById(offlineTranslateTempId);
         if (offlineTranslateTemp == null) {
             return null;
@@ -159,65 +556,159 @@ public class TranslateService {
         return getFileDir(offlineTranslateTempId, false) + offlineTranslateTemp.getFileName();
     }
 
-    public String upload(Long offlineTranslateTempId, MultipartFile file, boolean isSource) {
-        if(file == null) {
-            throw new RuntimeException("文件不能为空");
+    private boolean checkGPUAvailable() {
+        try {
+            Process process = new ProcessBuilder("nvidia-smi").start();
+            return process.waitFor() == 0;
+        } catch (IOException | InterruptedException e) {
+            return false;
         }
-        if(offlineTranslateTempId == null) {
-            throw new RuntimeException("离线翻译任务id不能为空");
+    }
+
+    private String getFileDir(Long offlineTranslateTempId, boolean isSource) {
+        return TRANSLATION + "/" + offlineTranslateTempId + (isSource ? "/source" : "/target") + "/";
+    }
+
+    /**
+     * 上传完成后提交翻译
+     * 同一本书（源文件哈希相同）已按相同目标语言和翻译引擎翻译过时，直接复用译文，任务立即完成
+     */
+    private void submitUploaded(OfflineTranslateTemp offlineTranslateTemp) {
+        if (reuseTranslatedBook(offlineTranslateTemp)) {
+            offlineTranslateTemp.setTranslationStatus(TranslationStatus.COMPLETED.getValue());
+            offlineTranslateTemp.setProgress(100);
+        } else {
+            offlineTranslateTemp.setTranslationStatus(TranslationStatus.NOT_START.getValue());
+        }
+        translateRepository.updateOfflineTranslateTemp(offlineTranslateTemp);
+    }
+
+    private boolean reuseTranslatedBook(OfflineTranslateTemp offlineTranslateTemp) {
+        OfflineTranslateTemp translated = translateRepository.findCompletedOfflineTranslateTempBySource(
+                offlineTranslateTemp.getSourceHash(), offlineTranslateTemp.getLangCode(), offlineTranslateTemp.getTranslatorType());
+        if (translated == null || Objects.equals(translated.getId(), offlineTranslateTemp.getId())) {
+            return false;
         }
-        // 创建保存目录
-        File dir = new File(getFileDir(offlineTranslateTempId, isSource));
-        if (!dir.exists()) {
-            dir.mkdirs();
+        Path translatedFile = Paths.get(getFileDir(translated.getId(), false), translated.getFileName());
+        if (!Files.isRegularFile(translatedFile)) {
+            return false;
         }
+        Path targetFile = Paths.get(getFileDir(offlineTranslateTemp.getId(), false), offlineTranslateTemp.getFileName());
         try {
-            // 获取文件名
-            String originalFilename = file.getOriginalFilename();
-            if(originalFilename == null) {
-                throw new RuntimeException("文件名为空");
-            }
-            if(originalFilename.contains("/")) {
-                originalFilename = originalFilename.substring(originalFilename.lastIndexOf("/") + 1);
+            Files.createDirectories(targetFile.getParent());
+            Files.deleteIfExists(targetFile);
+            try {
+                // 译文不会再修改，优先硬链接，不占额外空间
+                Files.createLink(targetFile, translatedFile);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(translatedFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
             }
-            Path filePath = Paths.get(getFileDir(offlineTranslateTempId, isSource), originalFilename);
-            // 保存文件
-            Files.write(filePath, file.getBytes());
-            return originalFilename;
-        }catch (Exception e) {
-            throw new RuntimeException("文件上传失败");
+            log.info("复用已翻译的书籍, id:{}, reuseId:{}, sourceHash:{}", offlineTranslateTemp.getId(), translated.getId(), offlineTranslateTemp.getSourceHash());
+            return true;
+        } catch (IOException e) {
+            log.warn("复用已翻译的书籍失败，重新翻译, id:{}, reuseId:{}", offlineTranslateTemp.getId(), translated.getId(), e);
+            deleteFile(targetFile);
+            return false;
         }
     }
 
-    private boolean checkGPUAvailable() {
-        try {
-            Process process = new ProcessBuilder("nvidia-smi").start();
-            return process.waitFor() == 0;
-        } catch (IOException | InterruptedException e) {
-            return false;
+    private OfflineTranslateTemp getUploadingTemp(Long offlineTranslateTempId) {
+        if (offlineTranslateTempId == null) {
+            throw new IllegalArgumentException("offlineTranslateTempId is null");
+        }
+        OfflineTranslateTemp offlineTranslateTemp = translateRepository.findOfflineTranslateTempById(offlineTranslateTempId);
+        if (offlineTranslateTemp == null) {
+            throw new IllegalArgumentException("离线翻译任务不存在");
+        }
+        if (!Objects.equals(offlineTranslateTemp.getTranslationStatus(), TranslationStatus.UPLOADING.getValue())) {
+            throw new IllegalStateException("离线翻译任务不在上传中");
         }
+        return offlineTranslateTemp;
+    }
+
+    private Path getUploadPartPath(OfflineTranslateTemp offlineTranslateTemp) {
+        return Paths.get(getFileDir(offlineTranslateTemp.getId(), true), offlineTranslateTemp.getFileName() + UPLOAD_PART_SUFFIX);
     }
 
-    private String generateMD5Hash(String input) {
+    private static String sanitizeFileName(String fileName) {
+        if (StringUtils.isBlank(fileName)) {
+            throw new IllegalArgumentException("文件名为空");
+        }
+        String name = fileName.replace('\\', '/');
+        name = name.substring(name.lastIndexOf('/') + 1);
+        if (name.isEmpty() || name.equals("..")) {
+            throw new IllegalArgumentException("文件名不合法");
+        }
+        return name;
+    }
+
+    private static MessageDigest newUploadDigest() {
         try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(input.getBytes());
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 通过固定大小的缓冲区边读边写边计算哈希，最多写入 limit 字节，超过时抛出异常
+     */
+    private static long copyWithDigest(InputStream in, FileChannel channel, MessageDigest digest, long limit) throws IOException {
+        byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (total + read > limit) {
+                throw new IOException("上传内容超过限制, limit:" + limit);
             }
-            return sb.toString();
-        } catch (Exception e) {
-            // 降级处理
-            return Integer.toHexString(input.hashCode());
+            byteBuffer.clear().limit(read);
+            while (byteBuffer.hasRemaining()) {
+                channel.write(byteBuffer);
+            }
+            // 写入成功后再计入哈希，保证哈希与落盘内容一致
+            digest.update(buffer, 0, read);
+            total += read;
         }
+        return total;
     }
 
-    private String getFileDir(Long offlineTranslateTempId, boolean isSource) {
-        return TRANSLATION + "/" + offlineTranslateTempId + (isSource ? "/source" : "/target") + "/";
+    private static class UploadState {
+        private MessageDigest digest = newUploadDigest();
+        private long digestedBytes;
+        private volatile long lastAccessMillis = System.currentTimeMillis();
+
+        private void rehash(Path part, long length) throws IOException {
+            digest = newUploadDigest();
+            try (InputStream in = Files.newInputStream(part)) {
+                byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
+                long remaining = length;
+                int read;
+                while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                    digest.update(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+            digestedBytes = length;
+        }
+    }
+
+    private Path getCheckpointPath(Long offlineTranslateTempId) {
+        return Paths.get(TRANSLATION, String.valueOf(offlineTranslateTempId), "checkpoint", "segments.log");
     }
 
 
+    private void deleteFile(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.error("删除临时文件时出错: {}", file, e);
+        }
+    }
+
     private void deleteDirectory(Path directory) {
         if (directory == null) {
             return;
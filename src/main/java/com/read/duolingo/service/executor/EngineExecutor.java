@@ -0,0 +1,113 @@
+package com.read.duolingo.service.executor;
+
+import com.read.duolingo.enums.ExecutionMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 翻译引擎的阻塞调用执行器
+ * PLATFORM：固定大小的平台线程池
+ * VIRTUAL：每个任务一个虚拟线程，并发数由 maxConcurrency 信号量限制，排队等待不占用平台线程
+ * 两种模式下执行中+排队的任务超过 maxConcurrency + maxQueued 时都直接拒绝，对应的 future 立即失败
+ */
+@Slf4j
+public class EngineExecutor implements Executor {
+
+    private final String name;
+    private final ExecutionMode mode;
+    private final int maxConcurrency;
+    private final int maxQueued;
+    private final ThreadPoolTaskExecutor platformExecutor;
+    private final ExecutorService virtualExecutor;
+    private final Semaphore concurrency;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public EngineExecutor(String name, ExecutionMode mode, int maxConcurrency, int maxQueued) {
+        this.name = name;
+        this.mode = mode;
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueued = maxQueued;
+        if (mode == ExecutionMode.VIRTUAL) {
+            this.platformExecutor = null;
+            this.virtualExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-vt-", 0).factory());
+            this.concurrency = new Semaphore(maxConcurrency, true);
+        } else {
+            this.platformExecutor = new ThreadPoolTaskExecutor();
+            platformExecutor.setThreadNamePrefix(name + "-");
+            platformExecutor.setCorePoolSize(maxConcurrency);
+            platformExecutor.setMaxPoolSize(maxConcurrency);
+            platformExecutor.setQueueCapacity(maxQueued);
+            platformExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+            platformExecutor.initialize();
+            this.virtualExecutor = null;
+            this.concurrency = null;
+        }
+        log.info("初始化引擎执行器, name:{}, mode:{}, maxConcurrency:{}, maxQueued:{}", name, mode, maxConcurrency, maxQueued);
+    }
+
+    /**
+     * 满了抛出 RejectedExecutionException
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (pending.incrementAndGet() > maxConcurrency + maxQueued) {
+            pending.decrementAndGet();
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException(name + " 执行器已满, maxConcurrency:" + maxConcurrency + ", maxQueued:" + maxQueued);
+        }
+        try {
+            if (mode == ExecutionMode.VIRTUAL) {
+                virtualExecutor.execute(() -> {
+                    concurrency.acquireUninterruptibly();
+                    try {
+                        command.run();
+                    } finally {
+                        concurrency.release();
+                        pending.decrementAndGet();
+                    }
+                });
+            } else {
+                platformExecutor.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            pending.decrementAndGet();
+            rejectedCount.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * 异步执行，被拒绝时返回立即失败的 future，不会静默丢弃
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, this);
+        } catch (RejectedExecutionException e) {
+            log.warn("{} 拒绝执行任务: {}", name, e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", mode.name());
+        stats.put("maxConcurrency", maxConcurrency);
+        stats.put("pending", pending.get());
+        stats.put("rejected", rejectedCount.get());
+        return stats;
+    }
+}
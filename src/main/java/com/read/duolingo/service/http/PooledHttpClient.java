@@ -0,0 +1,105 @@
+package com.read.duolingo.service.http;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 所有翻译引擎共用的HTTP客户端
+ * 1. 按host分连接池，长连接复用，避免每个段落都重新握手
+ * 2. 统一的连接/读取超时，空闲连接定期回收
+ * 3. 自动发送 Accept-Encoding 并解压 gzip/deflate 响应
+ */
+@Slf4j
+@Component
+public class PooledHttpClient {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    @Getter
+    private final RestTemplate restTemplate;
+
+    public PooledHttpClient(@Value("${translate.http.max-total:400}") int maxTotal,
+                            @Value("${translate.http.max-per-route:200}") int maxPerRoute,
+                            @Value("${translate.http.connect-timeout-millis:3000}") long connectTimeoutMillis,
+                            @Value("${translate.http.read-timeout-millis:120000}") long readTimeoutMillis,
+                            @Value("${translate.http.connection-request-timeout-millis:30000}") long connectionRequestTimeoutMillis,
+                            @Value("${translate.http.idle-timeout-millis:60000}") long idleTimeoutMillis) {
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMillis))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+                        // 长时间空闲的连接复用前先检查，避免拿到已被对端关闭的连接
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeoutMillis))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleTimeoutMillis))
+                .build();
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        log.info("初始化HTTP连接池, maxTotal:{}, maxPerRoute:{}, connectTimeout:{}ms, readTimeout:{}ms",
+                maxTotal, maxPerRoute, connectTimeoutMillis, readTimeoutMillis);
+    }
+
+    /**
+     * 供 main 方法等非 Spring 环境使用的默认配置
+     */
+    public static PooledHttpClient createDefault() {
+        return new PooledHttpClient(400, 200, 3000, 120000, 30000, 60000);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("total", toMap(connectionManager.getTotalStats()));
+        Map<String, Object> routes = new LinkedHashMap<>();
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            routes.put(route.getTargetHost().toURI(), toMap(connectionManager.getStats(route)));
+        }
+        stats.put("routes", routes);
+        return stats;
+    }
+
+    private static Map<String, Object> toMap(PoolStats poolStats) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("leased", poolStats.getLeased());
+        stats.put("available", poolStats.getAvailable());
+        stats.put("pending", poolStats.getPending());
+        stats.put("max", poolStats.getMax());
+        return stats;
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.error("关闭HTTP连接池失败", e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.read.duolingo.service.limiter;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 基于延迟和错误率的自适应并发上限（AIMD）
+ * 以“每个token的请求耗时”衡量后端负载：
+ * 1. 请求失败：上限乘以 backoffRatio
+ * 2. 单token耗时超过基线的 latencyTolerance 倍：说明后端已过饱和，上限小幅下调
+ * 3. 否则在许可池确实被用满时加性增加 increaseStep，逐步逼近 GPU 的吞吐拐点
+ * 基线取观测到的最小单token耗时，并缓慢上浮以适应模型/硬件变化
+ * 一批里的 prompt 是并行解码的，批越大单token耗时越小，所以 EWMA 和基线按批大小分桶（1、2-3、4-7、...）各自统计，
+ * 只和同一桶的基线比较，避免在线单条请求混在离线大批里被误判为过饱和
+ * 调整结果直接写回 WeightedPermitPool 的容量
+ */
+public class AdaptiveLimiter {
+
+    private static final double EWMA_ALPHA = 0.2;
+    private static final double LATENCY_DECREASE_RATIO = 0.95;
+    private static final double BASELINE_DRIFT = 1.001;
+    // 批大小分桶数，最后一桶包含 2^(BUCKETS-1) 及以上
+    private static final int BUCKETS = 6;
+
+    private final WeightedPermitPool pool;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int increaseStep;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+
+    private double limit;
+    private final double[] ewmaLatencyPerToken = new double[BUCKETS];
+    private final double[] baselineLatencyPerToken = new double[BUCKETS];
+    private long successCount;
+    private long errorCount;
+
+    public AdaptiveLimiter(WeightedPermitPool pool, int minLimit, int maxLimit, int increaseStep,
+                           double backoffRatio, double latencyTolerance) {
+        this.pool = pool;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.increaseStep = increaseStep;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.min(Math.max(pool.getCapacity(), minLimit), maxLimit);
+        Arrays.fill(baselineLatencyPerToken, Double.MAX_VALUE);
+        pool.setCapacity((int) limit);
+    }
+
+    /**
+     * 请求成功
+     * @param latencyMillis 请求耗时
+     * @param tokens 请求占用的tokens
+     * @param batchSize 一次请求中的 prompt 数
+     * @param saturated 发起请求时许可池是否已接近用满
+     */
+    public void onSuccess(long latencyMillis, int tokens, int batchSize, boolean saturated) {
+        int newLimit;
+        synchronized (this) {
+            successCount++;
+            int bucket = bucket(batchSize);
+            double latencyPerToken = (double) latencyMillis / Math.max(tokens, 1);
+            ewmaLatencyPerToken[bucket] = ewmaLatencyPerToken[bucket] == 0 ? latencyPerToken
+                    : EWMA_ALPHA * latencyPerToken + (1 - EWMA_ALPHA) * ewmaLatencyPerToken[bucket];
+            baselineLatencyPerToken[bucket] = Math.min(latencyPerToken, baselineLatencyPerToken[bucket] * BASELINE_DRIFT);
+
+            if (ewmaLatencyPerToken[bucket] > baselineLatencyPerToken[bucket] * latencyTolerance) {
+                limit = Math.max(minLimit, limit * LATENCY_DECREASE_RATIO);
+            } else if (saturated) {
+                limit = Math.min(maxLimit, limit + increaseStep);
+            }
+            newLimit = (int) limit;
+        }
+        applyLimit(newLimit);
+    }
+
+    /**
+     * 请求失败或超时
+     */
+    public void onError() {
+        int newLimit;
+        synchronized (this) {
+            errorCount++;
+            limit = Math.max(minLimit, limit * backoffRatio);
+            newLimit = (int) limit;
+        }
+        applyLimit(newLimit);
+    }
+
+    /**
+     * 许可池是否已接近用满，用于判断是否有继续加大上限的需求
+     */
+    public boolean isSaturated() {
+        return pool.getUsed() + increaseStep >= pool.getCapacity() || pool.getWaiting() > 0;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("limit", (int) limit);
+        stats.put("minLimit", minLimit);
+        stats.put("maxLimit", maxLimit);
+        Map<String, Object> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (ewmaLatencyPerToken[i] == 0) {
+                continue;
+            }
+            Map<String, Object> bucketStats = new LinkedHashMap<>();
+            bucketStats.put("ewmaLatencyPerToken", ewmaLatencyPerToken[i]);
+            bucketStats.put("baselineLatencyPerToken", baselineLatencyPerToken[i]);
+            buckets.put("batch>=" + (1 << i), bucketStats);
+        }
+        stats.put("latencyByBatchSize", buckets);
+        stats.put("successCount", successCount);
+        stats.put("errorCount", errorCount);
+        return stats;
+    }
+
+    /**
+     * 批大小按 2 的幂分桶：1 -> 0，2-3 -> 1，4-7 -> 2 ...
+     */
+    private static int bucket(int batchSize) {
+        return Math.min(31 - Integer.numberOfLeadingZeros(Math.max(batchSize, 1)), BUCKETS - 1);
+    }
+
+    private void applyLimit(int newLimit) {
+        if (newLimit != pool.getCapacity()) {
+            pool.setCapacity(newLimit);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.read.duolingo.service.limiter;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 异步加权许可池（按tokens计数的信号量）
+ * 1. 获取许可返回 CompletableFuture，等待期间不占用任何线程
+ * 2. 等待者按优先级分组，组内严格先进先出；队头放不下时后面的请求也不插队，避免大请求被小请求饿死
+ * 3. 支持超时（TimeoutException）和取消（future.cancel）
+ * 4. 容量可在运行时调整
+ */
+public class WeightedPermitPool {
+
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1,
+            Thread.ofPlatform().daemon().name("permit-pool-timer").factory());
+    static {
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final String name;
+    private final List<ArrayDeque<Waiter>> waiters;
+    private int capacity;
+    private int used;
+
+    /**
+     * @param capacity 总许可数
+     * @param priorityLevels 优先级个数，0最高
+     */
+    public WeightedPermitPool(String name, int capacity, int priorityLevels) {
+        this.name = name;
+        this.capacity = capacity;
+        this.waiters = new ArrayList<>(priorityLevels);
+        for (int i = 0; i < priorityLevels; i++) {
+            waiters.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * 获取许可，拿到后必须调用 release 归还相同数量
+     * 超过总容量的请求在池子空闲时放行
+     */
+    public CompletableFuture<Void> acquire(int permits, int priority, long timeoutMillis) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Waiter waiter;
+        synchronized (this) {
+            if (!hasWaiters() && fits(permits)) {
+                used += permits;
+                future.complete(null);
+                return future;
+            }
+            waiter = new Waiter(future, permits);
+            waiters.get(Math.min(Math.max(priority, 0), waiters.size() - 1)).addLast(waiter);
+        }
+        if (timeoutMillis > 0) {
+            waiter.timeoutTask = TIMER.schedule(() -> {
+                if (remove(waiter)) {
+                    future.completeExceptionally(new TimeoutException(name + " 获取许可超时, permits:" + permits));
+                    // 队头超时后，后面的等待者可能已经放得下
+                    dispatch();
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        // 调用方取消时从队列中移除
+        future.whenComplete((v, e) -> {
+            if (future.isCancelled() && remove(waiter)) {
+                dispatch();
+            }
+        });
+        // 高优先级请求可能排在低优先级等待者前面，入队后尝试唤醒一次
+        dispatch();
+        return future;
+    }
+
+    public void release(int permits) {
+        synchronized (this) {
+            used = Math.max(used - permits, 0);
+        }
+        dispatch();
+    }
+
+    public void setCapacity(int capacity) {
+        synchronized (this) {
+            this.capacity = capacity;
+        }
+        dispatch();
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int getUsed() {
+        return used;
+    }
+
+    public synchronized int getWaiting() {
+        return waiters.stream().mapToInt(ArrayDeque::size).sum();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("capacity", capacity);
+            stats.put("used", used);
+        }
+        stats.put("waiting", getWaiting());
+        return stats;
+    }
+
+    /**
+     * 按优先级从高到低、组内先进先出唤醒等待者，队头放不下时停止
+     */
+    private void dispatch() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            outer:
+            for (ArrayDeque<Waiter> queue : waiters) {
+                while (!queue.isEmpty()) {
+                    Waiter head = queue.peekFirst();
+                    if (!fits(head.permits)) {
+                        break outer;
+                    }
+                    queue.pollFirst();
+                    used += head.permits;
+                    granted.add(head);
+                }
+            }
+        }
+        // 在锁外完成future，避免回调在锁内执行
+        for (Waiter waiter : granted) {
+            if (waiter.timeoutTask != null) {
+                waiter.timeoutTask.cancel(false);
+            }
+            if (!waiter.future.complete(null)) {
+                // 已经超时或被取消，许可还回去
+                release(waiter.permits);
+            }
+        }
+    }
+
+    private synchronized boolean remove(Waiter waiter) {
+        for (ArrayDeque<Waiter> queue : waiters) {
+            if (queue.remove(waiter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean fits(int permits) {
+        return used == 0 || used + permits <= capacity;
+    }
+
+    private boolean hasWaiters() {
+        for (ArrayDeque<Waiter> queue : waiters) {
+            if (!queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Waiter {
+        private final CompletableFuture<Void> future;
+        private final int permits;
+        private volatile ScheduledFuture<?> timeoutTask;
+
+        private Waiter(CompletableFuture<Void> future, int permits) {
+            this.future = future;
+            this.permits = permits;
+        }
+    }
+}
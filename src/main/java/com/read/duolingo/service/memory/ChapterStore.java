@@ -0,0 +1,94 @@
+package com.read.duolingo.service.memory;
+
+import com.read.duolingo.enums.TranslatorType;
+import com.read.duolingo.utils.HtmlUtil;
+import com.read.duolingo.utils.StringUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 章节级翻译结果存储，按内容寻址
+ * 以 (章节原始内容的 SHA-256, langCode, TranslatorType) 为key，每个章节一个文件：
+ * translation/memory/chapters/{translatorType}/{langCode}/{hash前两位}/{hash}
+ * 重新上传的书只有内容变化的章节需要重新翻译
+ */
+@Slf4j
+@Component
+public class ChapterStore {
+
+    private static final Path CHAPTER_DIR = Paths.get(System.getProperty("user.dir"), "translation", "memory", "chapters");
+
+    @Value("${translate.chapter-cache.enabled:true}")
+    private boolean enabled;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    /**
+     * 绑定目标语言和翻译引擎的章节缓存
+     */
+    public HtmlUtil.ChapterCache forJob(String langCode, TranslatorType translatorType) {
+        if (!enabled) {
+            return HtmlUtil.ChapterCache.NONE;
+        }
+        Path dir = CHAPTER_DIR.resolve(translatorType.name()).resolve(langCode);
+        return new HtmlUtil.ChapterCache() {
+            @Override
+            public byte[] get(byte[] content) {
+                Path file = resolve(dir, content);
+                try {
+                    if (Files.exists(file)) {
+                        hits.incrementAndGet();
+                        return Files.readAllBytes(file);
+                    }
+                } catch (IOException e) {
+                    log.warn("读取章节缓存失败: {}", file, e);
+                }
+                misses.incrementAndGet();
+                return null;
+            }
+
+            @Override
+            public void put(byte[] content, byte[] translated) {
+                Path file = resolve(dir, content);
+                Path tempFile = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().threadId() + ".tmp");
+                try {
+                    Files.createDirectories(file.getParent());
+                    Files.write(tempFile, translated);
+                    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    writes.incrementAndGet();
+                } catch (IOException e) {
+                    log.warn("写入章节缓存失败: {}", file, e);
+                    try {
+                        Files.deleteIfExists(tempFile);
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        };
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("writes", writes.get());
+        return stats;
+    }
+
+    private static Path resolve(Path dir, byte[] content) {
+        String hash = StringUtil.sha256Hex(content);
+        return dir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
@@ -0,0 +1,277 @@
+package com.read.duolingo.service.memory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 追加写的本地KV文件
+ * 记录格式：[keyLen int][valueLen int][key bytes][value bytes]，内存中只保留 key哈希 -> 记录偏移量 的索引，
+ * 启动时顺序扫描一遍文件重建索引（只读key，跳过value），文件尾部不完整的记录会被截掉
+ * 索引用 key 的 SHA-256 前 8 字节，每条只占两个 long；读取时会校验记录中的 key，哈希碰撞按未命中处理
+ * 设置了 maxFileBytes 时文件超过上限会压缩：只保留最新写入、总大小不超过上限一半的有效记录，文件和索引都有界
+ * 写入位置只在本进程内维护，打开时对文件加排他锁，同一文件同时只能被一个进程（一个实例）打开
+ */
+@Slf4j
+public class DiskLogStore implements Closeable {
+
+    private static final int HEADER_SIZE = 8;
+
+    private final Path file;
+    private final long maxFileBytes;
+    private volatile FileChannel channel;
+    private FileLock lock;
+    private final Map<Long, Long> index = new ConcurrentHashMap<>();
+    private long writePosition;
+
+    public DiskLogStore(Path file) throws IOException {
+        this(file, 0);
+    }
+
+    /**
+     * @param maxFileBytes 文件大小上限，超过后压缩，0 表示不限制
+     */
+    public DiskLogStore(Path file, long maxFileBytes) throws IOException {
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.lock = tryLock();
+            loadIndex();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 加排他锁，其他进程或本进程内其他实例已持有时抛出 StoreLockedException
+     */
+    private FileLock tryLock() throws IOException {
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            throw new StoreLockedException("本地存储文件已被占用: " + file);
+        }
+        return fileLock;
+    }
+
+    private void loadIndex() throws IOException {
+        long fileSize = channel.size();
+        long position = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 64 * 1024));
+        while (position + HEADER_SIZE <= fileSize) {
+            int keyLen = in.readInt();
+            int valueLen = in.readInt();
+            if (keyLen < 0 || valueLen < 0 || position + HEADER_SIZE + keyLen + valueLen > fileSize) {
+                break;
+            }
+            byte[] keyBytes = new byte[keyLen];
+            in.readFully(keyBytes);
+            in.skipNBytes(valueLen);
+            index.put(hash(keyBytes), position);
+            position += HEADER_SIZE + keyLen + valueLen;
+        }
+        if (position < fileSize) {
+            log.warn("本地存储文件尾部记录不完整，已截断, file:{}, validSize:{}, fileSize:{}", file, position, fileSize);
+            channel.truncate(position);
+        }
+        writePosition = position;
+    }
+
+    /**
+     * 读取记录，记录头越界或记录中的 key 与请求的不一致（文件被外部改动、索引错乱）时按未命中处理
+     */
+    public String get(String key) {
+        Long position = index.get(hash(key.getBytes(StandardCharsets.UTF_8)));
+        if (position == null) {
+            return null;
+        }
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(header, position);
+            header.flip();
+            int keyLen = header.getInt();
+            int valueLen = header.getInt();
+            if (keyLen < 0 || valueLen < 0 || position + HEADER_SIZE + keyLen + valueLen > channel.size()) {
+                log.warn("本地存储记录长度越界, file:{}, key:{}, position:{}", file, key, position);
+                return null;
+            }
+            ByteBuffer record = ByteBuffer.allocate(keyLen + valueLen);
+            readFully(record, position + HEADER_SIZE);
+            if (!key.equals(new String(record.array(), 0, keyLen, StandardCharsets.UTF_8))) {
+                log.warn("本地存储记录key不一致, file:{}, key:{}, position:{}", file, key, position);
+                return null;
+            }
+            return new String(record.array(), keyLen, valueLen, StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            log.error("读取本地存储失败, file:{}, key:{}", file, key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 只查索引不读文件，哈希碰撞时可能误判为存在
+     */
+    public boolean containsKey(String key) {
+        return index.containsKey(hash(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public synchronized void put(String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length + valueBytes.length);
+        record.putInt(keyBytes.length).putInt(valueBytes.length).put(keyBytes).put(valueBytes);
+        record.flip();
+        if (maxFileBytes > 0 && writePosition + record.remaining() > maxFileBytes) {
+            try {
+                compact();
+            } catch (IOException e) {
+                log.error("本地存储压缩失败，继续追加写, file:{}", file, e);
+            }
+        }
+        long position = writePosition;
+        try {
+            while (record.hasRemaining()) {
+                writePosition += write(record, writePosition);
+            }
+            index.put(hash(keyBytes), position);
+        } catch (IOException e) {
+            log.error("写入本地存储失败, file:{}, key:{}", file, key, e);
+            // 回滚写了一半的记录，否则后续记录追加在残缺记录之后，重启扫描到这里就会把后面的记录全部截掉
+            writePosition = position;
+            try {
+                channel.truncate(position);
+            } catch (IOException ex) {
+                log.error("本地存储回滚残缺记录失败, file:{}, position:{}", file, position, ex);
+            }
+        }
+    }
+
+    int write(ByteBuffer buffer, long position) throws IOException {
+        return channel.write(buffer, position);
+    }
+
+    /**
+     * 压缩：从最新的记录往前保留索引中仍有效的记录，总大小不超过上限的一半，
+     * 按原顺序写到临时文件后原子替换原文件，替换前崩溃不影响原文件
+     * 压缩期间并发的读取可能按未命中处理
+     */
+    private void compact() throws IOException {
+        long start = System.currentTimeMillis();
+        long oldSize = writePosition;
+        TreeMap<Long, Long> hashByPosition = new TreeMap<>(Comparator.reverseOrder());
+        index.forEach((hash, position) -> hashByPosition.put(position, hash));
+        // 偏移量 -> {key哈希, 记录长度}，按偏移量升序写出
+        TreeMap<Long, long[]> kept = new TreeMap<>();
+        long keptBytes = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        for (Map.Entry<Long, Long> entry : hashByPosition.entrySet()) {
+            header.clear();
+            readFully(header, entry.getKey());
+            header.flip();
+            long length = HEADER_SIZE + (long) header.getInt() + header.getInt();
+            if (keptBytes + length > maxFileBytes / 2) {
+                break;
+            }
+            kept.put(entry.getKey(), new long[]{entry.getValue(), length});
+            keptBytes += length;
+        }
+
+        Path compactFile = file.resolveSibling(file.getFileName() + ".compact");
+        Map<Long, Long> newIndex = new HashMap<>();
+        long newPosition = 0;
+        try (FileChannel out = FileChannel.open(compactFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<Long, long[]> entry : kept.entrySet()) {
+                long length = entry.getValue()[1];
+                long copied = 0;
+                while (copied < length) {
+                    copied += channel.transferTo(entry.getKey() + copied, length - copied, out);
+                }
+                newIndex.put(entry.getValue()[0], newPosition);
+                newPosition += length;
+            }
+            out.force(false);
+        }
+        Files.move(compactFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // 原文件已被替换，重新打开新文件并加锁
+        lock.release();
+        channel.close();
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        lock = tryLock();
+        index.keySet().retainAll(newIndex.keySet());
+        index.putAll(newIndex);
+        writePosition = newPosition;
+        log.info("本地存储压缩完成, file:{}, size:{}, fileSize:{} -> {}, cost:{}ms",
+                file, index.size(), oldSize, newPosition, System.currentTimeMillis() - start);
+    }
+
+    private static long hash(byte[] keyBytes) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(keyBytes)).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long fileSize() {
+        return writePosition;
+    }
+
+    /**
+     * 刷盘
+     */
+    public void flush() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            log.error("本地存储刷盘失败, file:{}", file, e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("本地存储记录不完整: " + file);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        lock.release();
+        channel.close();
+    }
+}
@@ -0,0 +1,61 @@
+package com.read.duolingo.service.memory;
+
+import com.read.duolingo.utils.StringUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 离线翻译任务的断点
+ * 记录一本书已经翻译完成的段落，任务重试或进程重启后只需翻译剩余段落
+ * 打开时对断点文件加排他锁，租约被接管但旧节点还在翻译时，新节点打开会失败（StoreLockedException）
+ */
+@Slf4j
+public class JobCheckpoint implements Closeable {
+
+    private final DiskLogStore store;
+
+    private JobCheckpoint(DiskLogStore store) {
+        this.store = store;
+    }
+
+    public static JobCheckpoint open(Path file) throws IOException {
+        JobCheckpoint checkpoint = new JobCheckpoint(new DiskLogStore(file));
+        if (checkpoint.size() > 0) {
+            log.info("加载翻译断点, file:{}, 已完成段落数:{}", file, checkpoint.size());
+        }
+        return checkpoint;
+    }
+
+    public String get(String source) {
+        return store.get(buildKey(source));
+    }
+
+    public void put(String source, String target) {
+        // 空结果一般是翻译失败，下次还要重新翻译
+        if (StringUtils.isBlank(target)) {
+            return;
+        }
+        store.put(buildKey(source), target);
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public void flush() {
+        store.flush();
+    }
+
+    private static String buildKey(String source) {
+        return StringUtil.md5Hex(StringUtil.normalizeWhitespace(source));
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+}
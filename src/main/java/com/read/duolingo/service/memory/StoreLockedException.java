@@ -0,0 +1,13 @@
+package com.read.duolingo.service.memory;
+
+import java.io.IOException;
+
+/**
+ * 本地存储文件已被其他进程（或本进程内的其他实例）打开
+ */
+public class StoreLockedException extends IOException {
+
+    public StoreLockedException(String message) {
+        super(message);
+    }
+}
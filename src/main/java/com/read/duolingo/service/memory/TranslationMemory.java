@@ -0,0 +1,150 @@
+package com.read.duolingo.service.memory;
+
+import com.read.duolingo.enums.TranslatorType;
+import com.read.duolingo.utils.StringUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 翻译记忆
+ * 以 (归一化原文, langCode, TranslatorType) 为key，两级缓存：
+ * 1. 进程内有界LRU
+ * 2. 本地磁盘追加写文件，重启后只需重建索引即可继续命中；文件超过 translate.memory.max-file-bytes 后压缩，淘汰最早写入的记录
+ * 磁盘文件只能由一个进程写，多节点部署时每个节点用自己的文件（默认文件名带主机名，也可用 translate.memory.file 指定）
+ */
+@Slf4j
+@Component
+public class TranslationMemory {
+
+    private static final String MEMORY_DIR = System.getProperty("user.dir") + "/translation/memory";
+
+    @Value("${translate.memory.enabled:true}")
+    private boolean enabled;
+
+    @Value("${translate.memory.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${translate.memory.persistent:true}")
+    private boolean persistent;
+
+    @Value("${translate.memory.file:}")
+    private String memoryFile;
+
+    // 落盘文件大小上限，超过后压缩，只保留最近写入的一半
+    @Value("${translate.memory.max-file-bytes:1073741824}")
+    private long maxFileBytes;
+
+    private Map<String, String> lruCache;
+    private DiskLogStore diskStore;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int capacity = maxEntries;
+        lruCache = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        });
+        if (!enabled || !persistent) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            diskStore = new DiskLogStore(Paths.get(StringUtils.isNotBlank(memoryFile) ? memoryFile : defaultMemoryFile()), maxFileBytes);
+            log.info("加载翻译记忆完成, size:{}, fileSize:{}, cost:{}ms", diskStore.size(), diskStore.fileSize(), System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            log.error("加载翻译记忆失败，仅使用内存缓存", e);
+        }
+    }
+
+    private static String defaultMemoryFile() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        // 主机名在重启后不变，重启后仍能命中之前的记忆
+        return MEMORY_DIR + "/translation-memory-" + host + ".log";
+    }
+
+    @PreDestroy
+    public void close() {
+        if (diskStore == null) {
+            return;
+        }
+        try {
+            diskStore.close();
+        } catch (IOException e) {
+            log.error("关闭翻译记忆失败", e);
+        }
+    }
+
+    public String get(String source, String langCode, TranslatorType translatorType) {
+        if (!enabled) {
+            return null;
+        }
+        String key = buildKey(source, langCode, translatorType);
+        String target = lruCache.get(key);
+        if (target != null) {
+            memoryHits.incrementAndGet();
+            return target;
+        }
+        if (diskStore != null) {
+            target = diskStore.get(key);
+            if (target != null) {
+                diskHits.incrementAndGet();
+                lruCache.put(key, target);
+                return target;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String source, String langCode, TranslatorType translatorType, String target) {
+        // 空结果或原样返回的结果一般是翻译失败，不记忆
+        if (!enabled || StringUtils.isBlank(target) || StringUtils.isBlank(source) || target.equals(source)) {
+            return;
+        }
+        String key = buildKey(source, langCode, translatorType);
+        if (target.equals(lruCache.put(key, target))) {
+            return;
+        }
+        if (diskStore != null && !diskStore.containsKey(key)) {
+            diskStore.put(key, target);
+        }
+        writes.incrementAndGet();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("memoryHits", memoryHits.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("writes", writes.get());
+        stats.put("memorySize", lruCache.size());
+        stats.put("diskSize", diskStore == null ? 0 : diskStore.size());
+        return stats;
+    }
+
+    private static String buildKey(String source, String langCode, TranslatorType translatorType) {
+        return StringUtil.md5Hex(translatorType.name() + "\u0001" + langCode + "\u0001" + StringUtil.normalizeWhitespace(source));
+    }
+}
@@ -0,0 +1,178 @@
+package com.read.duolingo.service.progress;
+
+import com.read.duolingo.entity.OfflineTranslateTemp;
+import com.read.duolingo.enums.TranslationStatus;
+import com.read.duolingo.repo.TranslateRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 离线翻译进度推送
+ * 所有订阅者共用一个定时任务：每个周期对被订阅的任务取一次最新状态
+ * （本节点处理中的任务读 ProgressTracker，其余任务合并成一次数据库查询），
+ * 有变化时推送给该任务的所有订阅者，订阅者数量不影响数据库查询次数
+ * 事件：progress-进度或状态变化，done-任务结束（已完成或失败），error-任务不存在
+ */
+@Slf4j
+@Component
+public class ProgressEventBus {
+
+    private static final int HEARTBEAT_TICKS = 15;
+
+    @Resource
+    private ProgressTracker progressTracker;
+    @Resource
+    private TranslateRepository translateRepository;
+
+    @Value("${translate.offline.subscribe.timeout-millis:1800000}")
+    private long subscribeTimeoutMillis;
+
+    @Value("${translate.offline.subscribe.interval-millis:1000}")
+    private long intervalMillis;
+
+    private final Map<Long, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Map<Long, Snapshot> lastSnapshots = new ConcurrentHashMap<>();
+    private long ticks;
+
+    // 推送可能被慢客户端阻塞，不和任务调度共用线程
+    private final ScheduledExecutorService pushExecutor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("progress-push").factory());
+
+    @PostConstruct
+    public void init() {
+        pushExecutor.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pushExecutor.shutdownNow();
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+    }
+
+    public SseEmitter subscribe(Long offlineTranslateTempId) {
+        if (offlineTranslateTempId == null) {
+            throw new IllegalArgumentException("offlineTranslateTempId is null");
+        }
+        SseEmitter emitter = new SseEmitter(subscribeTimeoutMillis);
+        Runnable remove = () -> unsubscribe(offlineTranslateTempId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+        subscribers.computeIfAbsent(offlineTranslateTempId, k -> new CopyOnWriteArraySet<>()).add(emitter);
+        // 已有其他订阅者时先推送当前状态，否则等下个周期
+        Snapshot snapshot = lastSnapshots.get(offlineTranslateTempId);
+        if (snapshot != null) {
+            send(offlineTranslateTempId, emitter, snapshot);
+        }
+        return emitter;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("watchedJobs", subscribers.size());
+        stats.put("subscribers", subscribers.values().stream().mapToInt(Set::size).sum());
+        return stats;
+    }
+
+    private void unsubscribe(Long jobId, SseEmitter emitter) {
+        subscribers.computeIfPresent(jobId, (k, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+        if (!subscribers.containsKey(jobId)) {
+            lastSnapshots.remove(jobId);
+        }
+    }
+
+    private void tick() {
+        try {
+            if (subscribers.isEmpty()) {
+                return;
+            }
+            boolean heartbeat = ++ticks % HEARTBEAT_TICKS == 0;
+            Map<Long, Snapshot> snapshots = loadSnapshots(new ArrayList<>(subscribers.keySet()));
+            subscribers.forEach((jobId, emitters) -> {
+                Snapshot snapshot = snapshots.get(jobId);
+                if (snapshot == null) {
+                    emitters.forEach(emitter -> sendError(emitter, "离线翻译任务不存在"));
+                    return;
+                }
+                Snapshot last = lastSnapshots.put(jobId, snapshot);
+                if (!snapshot.equals(last)) {
+                    emitters.forEach(emitter -> send(jobId, emitter, snapshot));
+                } else if (heartbeat) {
+                    emitters.forEach(this::sendHeartbeat);
+                }
+            });
+        } catch (Exception e) {
+            log.error("推送离线翻译进度失败", e);
+        }
+    }
+
+    private Map<Long, Snapshot> loadSnapshots(List<Long> jobIds) {
+        Map<Long, Snapshot> snapshots = new HashMap<>();
+        List<Long> remoteIds = new ArrayList<>();
+        for (Long jobId : jobIds) {
+            Integer progress = progressTracker.getProgress(jobId);
+            if (progress != null) {
+                snapshots.put(jobId, new Snapshot(TranslationStatus.TRANSLATING.getValue(), progress));
+            } else {
+                remoteIds.add(jobId);
+            }
+        }
+        for (OfflineTranslateTemp offlineTranslateTemp : translateRepository.findOfflineTranslateTempByIds(remoteIds)) {
+            snapshots.put(offlineTranslateTemp.getId(), new Snapshot(offlineTranslateTemp.getTranslationStatus(),
+                    Optional.ofNullable(offlineTranslateTemp.getProgress()).orElse(0)));
+        }
+        return snapshots;
+    }
+
+    private void send(Long jobId, SseEmitter emitter, Snapshot snapshot) {
+        try {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("offlineTranslateTempId", jobId);
+            data.put("translationStatus", snapshot.translationStatus());
+            data.put("progress", snapshot.progress());
+            emitter.send(SseEmitter.event().name("progress").data(data));
+            if (snapshot.isFinished()) {
+                emitter.send(SseEmitter.event().name("done").data(data));
+                emitter.complete();
+            }
+        } catch (Exception e) {
+            // 客户端已断开
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void sendHeartbeat(SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event().comment("ping"));
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void sendError(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(message));
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private record Snapshot(Integer translationStatus, int progress) {
+        private boolean isFinished() {
+            return Objects.equals(translationStatus, TranslationStatus.COMPLETED.getValue())
+                    || Objects.equals(translationStatus, TranslationStatus.FAILED.getValue());
+        }
+    }
+}
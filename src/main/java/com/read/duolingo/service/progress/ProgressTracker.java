@@ -0,0 +1,124 @@
+package com.read.duolingo.service.progress;
+
+import com.read.duolingo.repo.TranslateRepository;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 离线翻译进度跟踪
+ * 1. 进度在内存中按已完成的 HTML 字节数累计，章节内按段落细分，不再只有章节级的粗粒度
+ * 2. 所有运行中任务的进度定时合并成一条 SQL 写回数据库，不再每个回调写一次整行
+ * 3. 本节点正在处理的任务直接从内存读取最新进度
+ */
+@Slf4j
+@Component
+public class ProgressTracker {
+
+    @Resource
+    private TranslateRepository translateRepository;
+
+    private final Map<Long, JobProgress> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 任务开始
+     * @param initialProgress 数据库中已有的进度，重试时进度不会倒退
+     */
+    public JobProgress start(Long jobId, String workerId, long totalWeight, int initialProgress) {
+        JobProgress progress = new JobProgress(jobId, workerId, totalWeight, initialProgress);
+        jobs.put(jobId, progress);
+        return progress;
+    }
+
+    /**
+     * 任务结束（完成或失败），之后的进度以数据库为准
+     */
+    public void finish(Long jobId) {
+        jobs.remove(jobId);
+    }
+
+    /**
+     * @return 本节点未在处理该任务时返回 null
+     */
+    public Integer getProgress(Long jobId) {
+        JobProgress progress = jobs.get(jobId);
+        return progress == null ? null : progress.getPercent();
+    }
+
+    /**
+     * 合并写回所有有变化的任务进度
+     */
+    @Scheduled(fixedDelayString = "${translate.offline.progress-flush-interval-millis:3000}")
+    public void flush() {
+        Map<Long, String> workerIds = new LinkedHashMap<>();
+        Map<Long, Integer> progresses = new LinkedHashMap<>();
+        for (JobProgress progress : jobs.values()) {
+            int percent = progress.takeDirtyPercent();
+            if (percent >= 0) {
+                workerIds.put(progress.jobId, progress.workerId);
+                progresses.put(progress.jobId, percent);
+            }
+        }
+        if (progresses.isEmpty()) {
+            return;
+        }
+        try {
+            translateRepository.batchUpdateOfflineTranslateTempProgress(workerIds, progresses);
+        } catch (Exception e) {
+            log.error("写回离线翻译进度失败, jobIds:{}", progresses.keySet(), e);
+            progresses.keySet().forEach(jobId -> {
+                JobProgress progress = jobs.get(jobId);
+                if (progress != null) {
+                    progress.markDirty();
+                }
+            });
+        }
+    }
+
+    public static class JobProgress {
+        private final Long jobId;
+        private final String workerId;
+        private final long totalWeight;
+        private final int initialProgress;
+        private final AtomicLong doneWeight = new AtomicLong();
+        private volatile int flushedPercent;
+
+        private JobProgress(Long jobId, String workerId, long totalWeight, int initialProgress) {
+            this.jobId = jobId;
+            this.workerId = workerId;
+            this.totalWeight = Math.max(totalWeight, 1);
+            this.initialProgress = Math.min(Math.max(initialProgress, 0), 99);
+            this.flushedPercent = this.initialProgress;
+        }
+
+        public void add(long weight) {
+            doneWeight.addAndGet(weight);
+        }
+
+        /**
+         * 完成前最多 99，100 由任务完成时写入
+         */
+        public int getPercent() {
+            int percent = (int) Math.min(doneWeight.get() * 100 / totalWeight, 99);
+            return Math.max(percent, initialProgress);
+        }
+
+        private synchronized int takeDirtyPercent() {
+            int percent = getPercent();
+            if (percent <= flushedPercent) {
+                return -1;
+            }
+            flushedPercent = percent;
+            return percent;
+        }
+
+        private synchronized void markDirty() {
+            flushedPercent = initialProgress - 1;
+        }
+    }
+}
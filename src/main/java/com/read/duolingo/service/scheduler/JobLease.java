@@ -0,0 +1,34 @@
+package com.read.duolingo.service.scheduler;
+
+import lombok.Getter;
+
+/**
+ * 离线翻译任务的租约
+ * 续约失败（任务已被其他节点接管）后标记为失效，翻译线程在下一次回调时中止
+ * workerId 是本次领取的租约标识（节点id加领取序号），每次领取都不同
+ */
+@Getter
+public class JobLease {
+
+    private final Long jobId;
+    private final String workerId;
+    private volatile boolean lost;
+
+    public JobLease(Long jobId, String workerId) {
+        this.jobId = jobId;
+        this.workerId = workerId;
+    }
+
+    public void markLost() {
+        this.lost = true;
+    }
+
+    /**
+     * 租约失效时抛出异常，中止当前任务
+     */
+    public void checkValid() {
+        if (lost) {
+            throw new IllegalStateException("离线翻译任务租约已失效, id:" + jobId + ", workerId:" + workerId);
+        }
+    }
+}
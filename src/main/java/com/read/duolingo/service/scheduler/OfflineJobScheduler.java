@@ -0,0 +1,191 @@
+package com.read.duolingo.service.scheduler;
+
+import com.read.duolingo.entity.OfflineTranslateTemp;
+import com.read.duolingo.enums.TranslationStatus;
+import com.read.duolingo.repo.TranslateRepository;
+import com.read.duolingo.service.TranslateService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 离线翻译任务调度
+ * 1. 多个节点共享同一个数据库，通过条件更新原子领取任务，同一本书只会被一个节点处理
+ * 2. 领取后持有有限时长的租约，处理期间定时续约；节点宕机后租约过期，任务被其他节点重新领取并从断点继续
+ * 3. 每个节点同时处理的书籍数可配置
+ */
+@Slf4j
+@Component
+public class OfflineJobScheduler {
+
+    @Resource
+    private TranslateRepository translateRepository;
+    @Resource
+    private TranslateService translateService;
+
+    @Value("${translate.offline.scheduler.enabled:true}")
+    private boolean enabled;
+
+    @Value("${translate.offline.scheduler.worker-id:}")
+    private String configuredWorkerId;
+
+    /**
+     * 单个节点同时处理的书籍数
+     */
+    @Value("${translate.offline.scheduler.max-concurrent-books:2}")
+    private int maxConcurrentBooks;
+
+    /**
+     * 租约时长，续约间隔需要明显小于租约时长
+     */
+    @Value("${translate.offline.scheduler.lease-seconds:60}")
+    private int leaseSeconds;
+
+    private String workerId;
+    private ThreadPoolTaskExecutor bookExecutor;
+    private final Map<Long, JobLease> runningJobs = new ConcurrentHashMap<>();
+    private final AtomicLong claimSequence = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        workerId = StringUtils.isNotBlank(configuredWorkerId) ? configuredWorkerId : defaultWorkerId();
+        bookExecutor = new ThreadPoolTaskExecutor();
+        bookExecutor.setThreadNamePrefix("offline-book-");
+        bookExecutor.setCorePoolSize(maxConcurrentBooks);
+        bookExecutor.setMaxPoolSize(maxConcurrentBooks);
+        bookExecutor.setQueueCapacity(0);
+        bookExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        bookExecutor.initialize();
+        log.info("初始化离线翻译调度, enabled:{}, workerId:{}, maxConcurrentBooks:{}, leaseSeconds:{}",
+                enabled, workerId, maxConcurrentBooks, leaseSeconds);
+    }
+
+    /**
+     * 按空闲槽位领取任务
+     */
+    @Scheduled(fixedDelayString = "${translate.offline.scheduler.poll-interval-millis:2000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        int slots = maxConcurrentBooks - runningJobs.size();
+        if (slots <= 0) {
+            return;
+        }
+        Map<Long, String> claimed;
+        try {
+            int failed = translateRepository.failExpiredOfflineTranslateTemps();
+            if (failed > 0) {
+                log.warn("租约过期的离线翻译任务失败次数超过上限，标记为翻译失败, count:{}", failed);
+            }
+            // 本节点仍在处理的任务即使续约失败导致租约过期也不再领取，否则同一进程会对同一本书跑两份
+            claimed = translateRepository.claimOfflineTranslateTemps(slots, leaseSeconds,
+                    Set.copyOf(runningJobs.keySet()), this::nextLeaseId);
+        } catch (Exception e) {
+            log.error("领取离线翻译任务失败", e);
+            return;
+        }
+        claimed.forEach(this::submit);
+    }
+
+    /**
+     * 为正在处理的任务续约，续约失败说明任务已被其他节点接管
+     */
+    @Scheduled(fixedDelayString = "${translate.offline.scheduler.heartbeat-interval-millis:15000}")
+    public void heartbeat() {
+        runningJobs.values().forEach(lease -> {
+            try {
+                if (!translateRepository.renewOfflineTranslateTempLease(lease.getJobId(), lease.getWorkerId(), leaseSeconds)) {
+                    log.warn("离线翻译任务续约失败，任务已被其他节点接管, id:{}", lease.getJobId());
+                    lease.markLost();
+                }
+            } catch (Exception e) {
+                // 数据库暂时不可用时不放弃任务，租约过期前还有机会续约
+                log.error("离线翻译任务续约异常, id:{}", lease.getJobId(), e);
+            }
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workerId", workerId);
+        stats.put("maxConcurrentBooks", maxConcurrentBooks);
+        stats.put("runningJobs", new ArrayList<>(runningJobs.keySet()));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 停机时释放持有的任务，其他节点无需等待租约过期
+        runningJobs.values().forEach(lease -> {
+            lease.markLost();
+            release(lease);
+        });
+        bookExecutor.shutdown();
+    }
+
+    private void submit(Long id, String leaseId) {
+        JobLease lease = new JobLease(id, leaseId);
+        runningJobs.put(id, lease);
+        try {
+            bookExecutor.execute(() -> {
+                try {
+                    OfflineTranslateTemp offlineTranslateTemp = translateRepository.findOfflineTranslateTempById(id);
+                    translateService.offlineTranslate(offlineTranslateTemp, lease);
+                } catch (Exception e) {
+                    log.error("离线翻译任务执行异常, id:{}", id, e);
+                } finally {
+                    runningJobs.remove(id, lease);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            runningJobs.remove(id, lease);
+            log.warn("离线翻译线程池已满，释放任务, id:{}", id);
+            release(lease);
+        }
+    }
+
+    private void release(JobLease lease) {
+        OfflineTranslateTemp offlineTranslateTemp = new OfflineTranslateTemp();
+        offlineTranslateTemp.setId(lease.getJobId());
+        offlineTranslateTemp.setWorkerId(lease.getWorkerId());
+        offlineTranslateTemp.setTranslationStatus(TranslationStatus.NOT_START.getValue());
+        try {
+            translateRepository.updateOfflineTranslateTempByWorker(offlineTranslateTemp);
+        } catch (Exception e) {
+            log.error("释放离线翻译任务失败，等待租约过期, id:{}", lease.getJobId(), e);
+        }
+    }
+
+    /**
+     * 每次领取使用独立的租约标识写入 worker_id，同一节点上过期的旧租约无法续约或更新新一次领取的任务
+     */
+    private String nextLeaseId() {
+        return workerId + "-" + claimSequence.incrementAndGet();
+    }
+
+    private static String defaultWorkerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        // 同一台机器上重启后是新的 workerId，旧进程的租约按过期处理
+        return host + "-" + ManagementFactory.getRuntimeMXBean().getPid() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
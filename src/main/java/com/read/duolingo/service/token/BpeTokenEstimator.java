@@ -0,0 +1,39 @@
+package com.read.duolingo.service.token;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用 gpt-4 的 cl100k BPE 精确计数，与 Seed-X 的分词器并不一致，不做校准，只记录偏差
+ */
+public class BpeTokenEstimator implements TokenEstimator {
+
+    private final Encoding encoding = Encodings.newDefaultEncodingRegistry().getEncodingForModel("gpt-4").get();
+
+    private final AtomicLong estimatedPromptTokens = new AtomicLong();
+    private final AtomicLong actualPromptTokens = new AtomicLong();
+
+    @Override
+    public int countTokens(String text) {
+        return encoding.countTokens(text);
+    }
+
+    @Override
+    public void calibrate(int estimatedPromptTokens, int actualPromptTokens, int actualCompletionTokens) {
+        this.estimatedPromptTokens.addAndGet(estimatedPromptTokens);
+        this.actualPromptTokens.addAndGet(actualPromptTokens);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "BPE");
+        stats.put("estimatedPromptTokens", estimatedPromptTokens.get());
+        stats.put("actualPromptTokens", actualPromptTokens.get());
+        return stats;
+    }
+}
@@ -0,0 +1,96 @@
+package com.read.duolingo.service.token;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按字符类别加权估算 tokens，只遍历一次字符串、不分配对象
+ * 初始权重取自常见 BPE 分词器的经验值（汉字约 1 token/字，英文约 4 字符/token），
+ * 再用引擎返回的实际用量做指数平滑校准：
+ * 1. promptScale = 实际 prompt tokens / 估算值，乘在估算结果上
+ * 2. completionRatio = 实际补全 tokens / 实际 prompt tokens，用于预留补全 tokens
+ */
+public class CharClassTokenEstimator implements TokenEstimator {
+
+    private static final double WEIGHT_CJK = 1.0;
+    private static final double WEIGHT_KANA_HANGUL = 1.0;
+    private static final double WEIGHT_LATIN_ALNUM = 0.25;
+    private static final double WEIGHT_WHITESPACE = 0.1;
+    private static final double WEIGHT_ASCII_PUNCT = 0.6;
+    private static final double WEIGHT_OTHER = 1.0;
+
+    private static final double MIN_SCALE = 0.25;
+    private static final double MAX_SCALE = 4.0;
+    private static final int MIN_COMPLETION_RESERVE = 30;
+    // 补全预留在平滑后的比例上再留的余量
+    private static final double COMPLETION_MARGIN = 1.2;
+
+    private final double alpha;
+    private volatile double promptScale = 1.0;
+    private volatile double completionRatio = 1.0;
+    private final AtomicLong calibrations = new AtomicLong();
+
+    /**
+     * @param alpha 校准的平滑系数，越大越快跟上实际用量
+     */
+    public CharClassTokenEstimator(double alpha) {
+        this.alpha = alpha;
+    }
+
+    @Override
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        double weight = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                    weight += WEIGHT_LATIN_ALNUM;
+                } else if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                    weight += WEIGHT_WHITESPACE;
+                } else {
+                    weight += WEIGHT_ASCII_PUNCT;
+                }
+            } else if (c >= 0x4E00 && c <= 0x9FFF || c >= 0x3400 && c <= 0x4DBF) {
+                weight += WEIGHT_CJK;
+            } else if (c >= 0x3040 && c <= 0x30FF || c >= 0xAC00 && c <= 0xD7AF) {
+                weight += WEIGHT_KANA_HANGUL;
+            } else if (Character.isLowSurrogate(c)) {
+                // 代理对按一个字符算，高位已经计过
+            } else {
+                weight += WEIGHT_OTHER;
+            }
+        }
+        return Math.max((int) Math.ceil(weight * promptScale), 1);
+    }
+
+    @Override
+    public int reserveCompletion(int promptTokens) {
+        return Math.max((int) Math.ceil(promptTokens * completionRatio * COMPLETION_MARGIN), MIN_COMPLETION_RESERVE);
+    }
+
+    @Override
+    public synchronized void calibrate(int estimatedPromptTokens, int actualPromptTokens, int actualCompletionTokens) {
+        if (estimatedPromptTokens <= 0 || actualPromptTokens <= 0) {
+            return;
+        }
+        double ratio = (double) actualPromptTokens / estimatedPromptTokens;
+        promptScale = Math.clamp(promptScale * (1 + alpha * (ratio - 1)), MIN_SCALE, MAX_SCALE);
+        double observedCompletionRatio = (double) actualCompletionTokens / actualPromptTokens;
+        completionRatio = Math.clamp(completionRatio + alpha * (observedCompletionRatio - completionRatio), 0.1, MAX_SCALE);
+        calibrations.incrementAndGet();
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "FAST");
+        stats.put("promptScale", promptScale);
+        stats.put("completionRatio", completionRatio);
+        stats.put("calibrations", calibrations.get());
+        return stats;
+    }
+}
@@ -0,0 +1,31 @@
+package com.read.duolingo.service.token;
+
+import java.util.Map;
+
+/**
+ * tokens 估算，用于 tokens 许可池的预算和 prompt 的合并、切分
+ */
+public interface TokenEstimator {
+
+    int countTokens(String text);
+
+    /**
+     * 为一个 prompt 预留的补全 tokens
+     */
+    default int reserveCompletion(int promptTokens) {
+        return Math.max(promptTokens, 30);
+    }
+
+    /**
+     * 用引擎返回的实际用量校准
+     * @param estimatedPromptTokens 本次请求所有 prompt 的估算值之和
+     * @param actualPromptTokens 引擎统计的 prompt tokens
+     * @param actualCompletionTokens 引擎统计的补全 tokens
+     */
+    default void calibrate(int estimatedPromptTokens, int actualPromptTokens, int actualCompletionTokens) {
+    }
+
+    default Map<String, Object> getStats() {
+        return Map.of();
+    }
+}
@@ -2,19 +2,25 @@ package com.read.duolingo.service.translators;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import com.read.duolingo.enums.ExecutionMode;
 import com.read.duolingo.enums.TranslatorType;
+import com.read.duolingo.service.executor.EngineExecutor;
+import com.read.duolingo.service.http.PooledHttpClient;
 import com.read.duolingo.utils.StringUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
@@ -22,32 +28,79 @@ import org.springframework.web.client.RestTemplate;
 @Component
 public class AzureTranslator implements Translator {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Resource
+    private PooledHttpClient httpClient;
+    private RestTemplate restTemplate;
     private static TokenCache tokenCache = null;
-    private final ThreadPoolTaskExecutor azureExecutor = new ThreadPoolTaskExecutor();
+    @Value("${translate.executor.mode:PLATFORM}")
+    private ExecutionMode executionMode;
+    @Value("${translate.executor.azure.max-concurrency:100}")
+    private int maxConcurrency;
+    @Value("${translate.executor.azure.max-queued:10000}")
+    private int maxQueued;
+    private EngineExecutor azureExecutor;
 
-    public AzureTranslator() {
-        azureExecutor.setCorePoolSize(100);
-        azureExecutor.setMaxPoolSize(100);
-        azureExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
-        azureExecutor.initialize();
+    // Azure单次请求最多100条文本，总字符数不超过50000
+    private static final int BATCH_MAX_SIZE = 100;
+    private static final int BATCH_MAX_CHARS = 50000;
+
+    @PostConstruct
+    public void init() {
+        restTemplate = httpClient.getRestTemplate();
+        azureExecutor = new EngineExecutor("azure", executionMode, maxConcurrency, maxQueued);
     }
 
     @Override
     public CompletableFuture<String> asyncTranslate(String source, String langCode, boolean isOnline) {
-        return CompletableFuture.supplyAsync(() -> {
+        return azureExecutor.supplyAsync(() -> {
             try {
                 return queryAzure(source, langCode);
             } catch (Exception e) {
                 log.error("AzureTranslator asyncTranslate error", e);
                 return source;
             }
-        }, azureExecutor);
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<String>> asyncTranslateBatch(List<String> sources, String langCode, boolean isOnline) {
+        return azureExecutor.supplyAsync(() -> {
+            try {
+                return queryAzure(sources, langCode);
+            } catch (Exception e) {
+                log.error("AzureTranslator asyncTranslateBatch error, size:{}", sources.size(), e);
+                return sources;
+            }
+        });
+    }
+
+    @Override
+    public int getBatchMaxSize() {
+        return BATCH_MAX_SIZE;
+    }
+
+    @Override
+    public int getBatchMaxChars() {
+        return BATCH_MAX_CHARS;
     }
 
     private String queryAzure(String source, String targetLang) throws Exception {
-        if (source.isEmpty()) {
-            return "";
+        return queryAzure(List.of(source), targetLang).getFirst();
+    }
+
+    private List<String> queryAzure(List<String> sources, String targetLang) throws Exception {
+        List<String> results = new ArrayList<>(sources);
+        // 空文本不发请求
+        List<Integer> requestIndexes = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            if (sources.get(i).isEmpty()) {
+                results.set(i, "");
+            } else {
+                requestIndexes.add(i);
+            }
+        }
+        if (requestIndexes.isEmpty()) {
+            return results;
         }
 
         String msTargetLang = normalizeToFullLang(targetLang);
@@ -60,9 +113,11 @@ public class AzureTranslator implements Translator {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Content-Type", "application/json");
         headers.set("Authorization", "Bearer " + token);
-        
-        TranslationRequest request = new TranslationRequest(source);
-        HttpEntity<TranslationRequest[]> entity = new HttpEntity<>(new TranslationRequest[]{request}, headers);
+
+        TranslationRequest[] requests = requestIndexes.stream()
+                .map(index -> new TranslationRequest(sources.get(index)))
+                .toArray(TranslationRequest[]::new);
+        HttpEntity<TranslationRequest[]> entity = new HttpEntity<>(requests, headers);
 
         TranslationResponse[] response = restTemplate.postForObject(
                 url + params,
@@ -70,12 +125,16 @@ public class AzureTranslator implements Translator {
                 TranslationResponse[].class
         );
 
-        if (response != null && response.length > 0 && response[0].getTranslations() != null 
-                && response[0].getTranslations().length > 0) {
-            return response[0].getTranslations()[0].getText();
-        } else {
-            return source;
+        // 响应数组与请求数组一一对应，缺失的保留原文
+        if (response != null) {
+            for (int i = 0; i < response.length && i < requestIndexes.size(); i++) {
+                if (response[i] != null && response[i].getTranslations() != null
+                        && response[i].getTranslations().length > 0) {
+                    results.set(requestIndexes.get(i), response[i].getTranslations()[0].getText());
+                }
+            }
         }
+        return results;
     }
 
     private String getAuthToken() {
@@ -171,6 +230,11 @@ public class AzureTranslator implements Translator {
 
     }
 
+    @Override
+    public Map<String, Object> getStats() {
+        return Map.of("executor", azureExecutor.getStats());
+    }
+
     public TranslatorType getTranslatorType() {
         return TranslatorType.AZURE;
     }
@@ -178,7 +242,10 @@ public class AzureTranslator implements Translator {
     public static void main(String[] args) {
         try {
             // 测试实际翻译
-            String s = new AzureTranslator().queryAzure("你是谁&q=我是了", "en");
+            AzureTranslator translator = new AzureTranslator();
+            translator.httpClient = PooledHttpClient.createDefault();
+            translator.init();
+            String s = translator.queryAzure("你是谁&q=我是了", "en");
             System.out.println("中文翻译英文: " + s);
 
         } catch (Exception e) {
@@ -7,19 +7,23 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.read.duolingo.enums.ExecutionMode;
 import com.read.duolingo.enums.TranslatorType;
+import com.read.duolingo.service.executor.EngineExecutor;
+import com.read.duolingo.service.http.PooledHttpClient;
 import com.read.duolingo.utils.StringUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
@@ -29,26 +33,71 @@ import org.springframework.web.client.RestTemplate;
 @Component
 public class GoogleTranslator implements Translator{
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final ThreadPoolTaskExecutor googleExecutor = new ThreadPoolTaskExecutor();
+    @Resource
+    private PooledHttpClient httpClient;
+    private RestTemplate restTemplate;
+    @Value("${translate.executor.mode:PLATFORM}")
+    private ExecutionMode executionMode;
+    @Value("${translate.executor.google.max-concurrency:100}")
+    private int maxConcurrency;
+    @Value("${translate.executor.google.max-queued:10000}")
+    private int maxQueued;
+    private EngineExecutor googleExecutor;
 
-    public GoogleTranslator() {
-        googleExecutor.setCorePoolSize(100);
-        googleExecutor.setMaxPoolSize(100);
-        googleExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
-        googleExecutor.initialize();
+    // 批量时多条文本用换行拼成一个q，控制在请求大小限制以内
+    private static final int BATCH_MAX_SIZE = 50;
+    private static final int BATCH_MAX_CHARS = 4500;
+    private static final String BATCH_SEPARATOR = "\n";
+
+    @PostConstruct
+    public void init() {
+        restTemplate = httpClient.getRestTemplate();
+        googleExecutor = new EngineExecutor("google", executionMode, maxConcurrency, maxQueued);
     }
 
     @Override
     public CompletableFuture<String> asyncTranslate(String source, String langCode, boolean isOnline) {
-        return CompletableFuture.supplyAsync(() -> {
+        return googleExecutor.supplyAsync(() -> {
             try {
                 return queryGoogle(source, langCode);
             } catch (Exception e) {
                 log.error("GoogleTranslator asyncTranslate error", e);
                 return source;
             }
-        }, googleExecutor);
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<String>> asyncTranslateBatch(List<String> sources, String langCode, boolean isOnline) {
+        // 原文自带换行时无法按换行拆回，逐条翻译
+        if (sources.size() == 1 || sources.stream().anyMatch(source -> source.contains(BATCH_SEPARATOR))) {
+            return Translator.super.asyncTranslateBatch(sources, langCode, isOnline);
+        }
+        return googleExecutor.supplyAsync(() -> {
+            try {
+                String joined = String.join(BATCH_SEPARATOR, sources);
+                List<String> results = List.of(queryGoogle(joined, langCode).split(BATCH_SEPARATOR, -1));
+                if (results.size() == sources.size()) {
+                    return results;
+                }
+                log.warn("GoogleTranslator 批量翻译结果行数不一致, expect:{}, actual:{}, 改为逐条翻译", sources.size(), results.size());
+            } catch (Exception e) {
+                log.error("GoogleTranslator asyncTranslateBatch error, size:{}", sources.size(), e);
+            }
+            return null;
+        }).thenCompose(results -> results != null
+                ? CompletableFuture.completedFuture(results)
+                : Translator.super.asyncTranslateBatch(sources, langCode, isOnline));
+    }
+
+    @Override
+    public int getBatchMaxSize() {
+        return BATCH_MAX_SIZE;
+    }
+
+    @Override
+    public int getBatchMaxChars() {
+        return BATCH_MAX_CHARS;
     }
 
     private String queryGoogle(String source, String targetLang) throws Exception {
@@ -73,18 +122,28 @@ public class GoogleTranslator implements Translator{
 
         Object[] response = restTemplate.postForObject(url, entity, Object[].class);
 
-        // 解析Google翻译响应
+        // 解析Google翻译响应，长文本会被拆成多句，需要把每句的译文拼接起来
         if (response != null && response.length > 0 && response[0] instanceof List<?> firstElement) {
-            if (!firstElement.isEmpty() && firstElement.getFirst() instanceof List<?> translationData) {
-                if (!translationData.isEmpty() && translationData.getFirst() instanceof String result) {
-                    return result;
+            StringBuilder result = new StringBuilder();
+            for (Object sentence : firstElement) {
+                if (sentence instanceof List<?> translationData && !translationData.isEmpty()
+                        && translationData.getFirst() instanceof String text) {
+                    result.append(text);
                 }
             }
+            if (!result.isEmpty()) {
+                return result.toString();
+            }
         }
         
         return source;
     }
 
+    @Override
+    public Map<String, Object> getStats() {
+        return Map.of("executor", googleExecutor.getStats());
+    }
+
     @Override
     public TranslatorType getTranslatorType() {
         return TranslatorType.GOOGLE;
@@ -94,7 +153,10 @@ public class GoogleTranslator implements Translator{
     public static void main(String[] args) {
         try {
             // 测试实际翻译
-            String s = new GoogleTranslator().queryGoogle("你是谁&q=我是d", "en");
+            GoogleTranslator translator = new GoogleTranslator();
+            translator.httpClient = PooledHttpClient.createDefault();
+            translator.init();
+            String s = translator.queryGoogle("你是谁&q=我是d", "en");
             System.out.println("中文翻译英文: " + s);
 
         } catch (Exception e) {
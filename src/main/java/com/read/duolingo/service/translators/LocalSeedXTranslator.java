@@ -1,67 +1,237 @@
 package com.read.duolingo.service.translators;
 
 import com.alibaba.fastjson2.JSON;
-import com.knuddels.jtokkit.Encodings;
-import com.knuddels.jtokkit.api.Encoding;
+import com.read.duolingo.enums.ExecutionMode;
+import com.read.duolingo.enums.TokenEstimatorType;
 import com.read.duolingo.enums.TranslatorType;
+import com.read.duolingo.service.executor.EngineExecutor;
+import com.read.duolingo.service.http.PooledHttpClient;
+import com.read.duolingo.service.limiter.AdaptiveLimiter;
+import com.read.duolingo.service.limiter.WeightedPermitPool;
+import com.read.duolingo.service.token.BpeTokenEstimator;
+import com.read.duolingo.service.token.CharClassTokenEstimator;
+import com.read.duolingo.service.token.TokenEstimator;
+import com.read.duolingo.utils.FutureUtil;
 import com.read.duolingo.utils.StringUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
 import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Slf4j
 @Setter
 @Component
 public class LocalSeedXTranslator implements Translator {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Resource
+    private PooledHttpClient httpClient;
+    private RestTemplate restTemplate;
 
-    private final static Integer seedXTotalMaxTokens = 51000;
-    private final AtomicInteger currentSeedXTokens = new AtomicInteger(0);
-    private Encoding encoding = Encodings.newDefaultEncodingRegistry().getEncodingForModel("gpt-4").get();
+    // tokens估算：FAST-按字符类别估算并用vllm返回的实际用量校准，BPE-cl100k精确计数
+    @Value("${translate.seedx.token-estimator.type:FAST}")
+    private TokenEstimatorType tokenEstimatorType;
+    @Value("${translate.seedx.token-estimator.calibration-alpha:0.05}")
+    private double tokenEstimatorCalibrationAlpha;
+    private TokenEstimator tokenEstimator = new CharClassTokenEstimator(0.05);
 
     private static final long WAIT_TIMEOUT = 60000;
-    private static final long WAIT_INTERVAL = 200;
+    // 译文中出现这些标记后的内容都是模型的额外解释，需要截掉
+    private static final String[] TRIM_MARKERS = {"（注", "[COT]"};
+    private static final int MAX_ATTEMPTS = 2;
+    // 在线请求优先获取tokens
+    private static final int PRIORITY_ONLINE = 0;
+    private static final int PRIORITY_OFFLINE = 1;
+
+    // seedx后端：多个vllm实例的地址，以及各自的tokens上限（与地址按顺序对应，个数不足时沿用最后一个）
+    // 每个实例一个tokens许可池，等待tokens时不占用线程
+    @Value("${translate.seedx.endpoints:http://localhost:8000}")
+    private String[] endpointUrls;
+    @Value("${translate.seedx.endpoint-max-tokens:51000}")
+    private int[] endpointMaxTokens;
+    // 连续失败多少次摘除实例，健康检查的超时时间
+    @Value("${translate.seedx.health-check.failure-threshold:3}")
+    private int healthCheckFailureThreshold;
+    @Value("${translate.seedx.health-check.timeout-millis:2000}")
+    private int healthCheckTimeoutMillis;
+    @Value("${translate.seedx.health-check.interval-millis:10000}")
+    private long healthCheckIntervalMillis;
+    // 健康检查单独调度，不占用 Spring 共用的调度线程
+    private final ScheduledExecutorService healthCheckScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("seedx-health-check").factory());
+    private SeedXEndpointPool endpointPool;
+
+    // 自适应tokens上限，根据请求延迟和错误率在[min, max]之间调整各实例许可池的容量
+    @Value("${translate.seedx.adaptive-limit.enabled:true}")
+    private boolean adaptiveLimitEnabled;
+    @Value("${translate.seedx.adaptive-limit.min-tokens:8000}")
+    private int adaptiveLimitMinTokens;
+    @Value("${translate.seedx.adaptive-limit.max-tokens:200000}")
+    private int adaptiveLimitMaxTokens;
+    @Value("${translate.seedx.adaptive-limit.increase-step:500}")
+    private int adaptiveLimitIncreaseStep;
+    @Value("${translate.seedx.adaptive-limit.backoff-ratio:0.8}")
+    private double adaptiveLimitBackoffRatio;
+    @Value("${translate.seedx.adaptive-limit.latency-tolerance:2.0}")
+    private double adaptiveLimitLatencyTolerance;
+
+    // 攒批参数：单批最多prompt数、单批最多tokens、离线任务的攒批等待时间
+    private static final int BATCH_MAX_PROMPTS = 32;
+    private static final int BATCH_MAX_TOKENS = 8000;
+    private static final long BATCH_LINGER_MILLIS = 10;
+    // 超长段落切块翻译时，失败的块最多重新提交的次数
+    private static final int LONG_SEGMENT_RETRIES = 2;
+
+    // 短段落合并：每个合并prompt的原文tokens预算、最多段落数、参与合并的单段tokens上限
+    @Value("${translate.seedx.packing.enabled:true}")
+    private boolean packingEnabled;
+    @Value("${translate.seedx.packing.target-tokens:512}")
+    private int packingTargetTokens;
+    @Value("${translate.seedx.packing.max-segments:20}")
+    private int packingMaxSegments;
+    @Value("${translate.seedx.packing.max-segment-tokens:200}")
+    private int packingMaxSegmentTokens;
+    // 超长段落切分：原文超过该tokens数的段落按句子切块并发翻译
+    @Value("${translate.seedx.split.max-chunk-tokens:400}")
+    private int splitMaxChunkTokens;
+    private final AtomicLong splitSegments = new AtomicLong();
+    private final AtomicLong splitChunks = new AtomicLong();
+    private final AtomicLong splitRetries = new AtomicLong();
+    private final AtomicLong packedPrompts = new AtomicLong();
+    private final AtomicLong packedSegments = new AtomicLong();
+    private final AtomicLong packFallbacks = new AtomicLong();
 
     // 优先级阻塞队列 - 根据优先级和提交顺序排序
     private final PriorityBlockingQueue<PriorityTask> taskQueue = new PriorityBlockingQueue<>();
+    private final AtomicLong taskSequence = new AtomicLong();
 
     // 工作线程池
-    private final ThreadPoolTaskExecutor seedXExecutor = new ThreadPoolTaskExecutor();
-
-    public LocalSeedXTranslator() {
+    @Value("${translate.executor.mode:PLATFORM}")
+    private ExecutionMode executionMode;
+    @Value("${translate.executor.seedx.max-concurrency:100}")
+    private int maxConcurrency;
+    @Value("${translate.executor.seedx.max-queued:10000}")
+    private int maxQueued;
+    private EngineExecutor seedXExecutor;
+
+    @PostConstruct
+    public void init() {
+        restTemplate = httpClient.getRestTemplate();
+        tokenEstimator = tokenEstimatorType == TokenEstimatorType.BPE
+                ? new BpeTokenEstimator() : new CharClassTokenEstimator(tokenEstimatorCalibrationAlpha);
         // 初始化线程池
-        seedXExecutor.setCorePoolSize(100);
-        seedXExecutor.setMaxPoolSize(100);
-        seedXExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
-        seedXExecutor.initialize();
+        seedXExecutor = new EngineExecutor("seedx", executionMode, maxConcurrency, maxQueued);
+        endpointPool = createEndpointPool();
+        healthCheckScheduler.scheduleWithFixedDelay(this::probeEndpoints, healthCheckIntervalMillis, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
 
         // 启动消费者线程
-        // 消费者线程 - 从优先级队列中取出任务执行
+        // 消费者线程 - 从优先级队列中取出任务攒批后执行
         Thread consumerThread = new Thread(this::consumeTasks, "LLMService-Consumer");
         consumerThread.setDaemon(true);
         consumerThread.start();
     }
 
-    // 消费者线程方法 - 从队列中取出任务并执行
+    private SeedXEndpointPool createEndpointPool() {
+        List<SeedXEndpointPool.Endpoint> endpoints = new ArrayList<>(endpointUrls.length);
+        for (int i = 0; i < endpointUrls.length; i++) {
+            String url = endpointUrls[i].trim();
+            int maxTokens = endpointMaxTokens[Math.min(i, endpointMaxTokens.length - 1)];
+            WeightedPermitPool tokenPool = new WeightedPermitPool("seedx-" + url, maxTokens, 2);
+            AdaptiveLimiter adaptiveLimiter = adaptiveLimitEnabled ? new AdaptiveLimiter(tokenPool, adaptiveLimitMinTokens, adaptiveLimitMaxTokens,
+                    adaptiveLimitIncreaseStep, adaptiveLimitBackoffRatio, adaptiveLimitLatencyTolerance) : null;
+            endpoints.add(new SeedXEndpointPool.Endpoint(url, tokenPool, adaptiveLimiter));
+        }
+        SimpleClientHttpRequestFactory probeRequestFactory = new SimpleClientHttpRequestFactory();
+        probeRequestFactory.setConnectTimeout(healthCheckTimeoutMillis);
+        probeRequestFactory.setReadTimeout(healthCheckTimeoutMillis);
+        log.info("seedx实例: {}", endpoints.stream().map(SeedXEndpointPool.Endpoint::getBaseUrl).toList());
+        return new SeedXEndpointPool(endpoints, healthCheckFailureThreshold, new RestTemplate(probeRequestFactory));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        healthCheckScheduler.shutdownNow();
+        endpointPool.shutdown();
+    }
+
+    /**
+     * 定时健康检查，摘除不可用的实例、恢复已经可用的实例
+     */
+    private void probeEndpoints() {
+        try {
+            endpointPool.probe();
+        } catch (Exception e) {
+            // 异常不能抛出，否则后续的定时检查不再执行
+            log.error("seedx实例健康检查异常", e);
+        }
+    }
+
+    // 消费者线程方法 - 从队列中取出任务，按prompt数和tokens攒成一批，一次请求发给seedx
     private void consumeTasks() {
         while (!Thread.currentThread().isInterrupted()) {
             try {
-                PriorityTask task = taskQueue.take(); // 阻塞直到有任务可用
-                seedXExecutor.execute(task);
+                PriorityTask first = taskQueue.take(); // 阻塞直到有任务可用
+                // 已取消（如对冲中输掉）或已完成的任务不再发送
+                if (first.future.isDone()) {
+                    continue;
+                }
+                List<PriorityTask> batch = new ArrayList<>();
+                // 合并prompt与普通prompt的stop不同，不放在同一批，暂存的任务在本批发出后放回队列
+                List<PriorityTask> deferred = new ArrayList<>();
+                batch.add(first);
+                int batchTokens = first.tokenCost;
+                // 在线任务不等待，只带上队列里已有的任务
+                long deadline = System.nanoTime() + (first.isOnline ? 0 : TimeUnit.MILLISECONDS.toNanos(BATCH_LINGER_MILLIS));
+                while (batch.size() < BATCH_MAX_PROMPTS) {
+                    long remaining = deadline - System.nanoTime();
+                    PriorityTask next = remaining > 0 ? taskQueue.poll(remaining, TimeUnit.NANOSECONDS) : taskQueue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next.future.isDone()) {
+                        continue;
+                    }
+                    if (next.packed != first.packed) {
+                        deferred.add(next);
+                        continue;
+                    }
+                    if (batchTokens + next.tokenCost > BATCH_MAX_TOKENS) {
+                        // 放回队列，留给下一批
+                        taskQueue.put(next);
+                        break;
+                    }
+                    batch.add(next);
+                    batchTokens += next.tokenCost;
+                }
+                dispatchBatch(batch, batchTokens);
+                deferred.forEach(taskQueue::put);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
@@ -70,13 +240,133 @@ public class LocalSeedXTranslator implements Translator {
     }
 
     public CompletableFuture<String> asyncTranslate(String source, String langCode, boolean isOnline) {
-        String prompt = "translate the following:" + StringUtil.escapeJson(source) + "<" + langCode + ">";
+        if (source != null && tokenEstimator.countTokens(source) > splitMaxChunkTokens) {
+            return translateLongSegment(source, langCode, isOnline);
+        }
+        return submitPrompt(buildPrompt(source, langCode), isOnline);
+    }
+
+    /**
+     * 超长段落按句子切块并发翻译，按顺序拼回
+     * 失败（空结果）的块单独重新提交，最多 LONG_SEGMENT_RETRIES 次；仍有块失败时整段返回空串，
+     * 由上层按失败处理（不写翻译记忆和断点，下次重试），不返回只翻译了一部分的结果
+     */
+    private CompletableFuture<String> translateLongSegment(String source, String langCode, boolean isOnline) {
+        List<String> chunks = SentenceSplitter.split(source, chunk -> tokenEstimator.countTokens(chunk), splitMaxChunkTokens);
+        splitSegments.incrementAndGet();
+        splitChunks.addAndGet(chunks.size());
+        log.info("段落超过tokens上限，切分翻译, length:{}, chunkCount:{}", source.length(), chunks.size());
+        String[] results = new String[chunks.size()];
+        List<Integer> indexes = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            indexes.add(i);
+        }
+        return translateChunks(chunks, indexes, results, langCode, isOnline, 0).thenApply(v -> {
+            for (String result : results) {
+                if (StringUtils.isBlank(result)) {
+                    log.error("切分翻译部分失败, chunkCount:{}", chunks.size());
+                    return "";
+                }
+            }
+            return SentenceSplitter.join(List.of(results), langCode);
+        });
+    }
+
+    /**
+     * 翻译 indexes 对应的块，结果写入 results，失败的块重新提交
+     */
+    private CompletableFuture<Void> translateChunks(List<String> chunks, List<Integer> indexes, String[] results,
+                                                    String langCode, boolean isOnline, int retry) {
+        List<CompletableFuture<String>> futures = indexes.stream()
+                .map(i -> submitPrompt(buildPrompt(chunks.get(i), langCode), isOnline)).toList();
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenCompose(v -> {
+            List<Integer> failed = new ArrayList<>();
+            for (int k = 0; k < indexes.size(); k++) {
+                String result = futures.get(k).join();
+                results[indexes.get(k)] = result;
+                if (StringUtils.isBlank(result)) {
+                    failed.add(indexes.get(k));
+                }
+            }
+            if (failed.isEmpty() || retry >= LONG_SEGMENT_RETRIES) {
+                return CompletableFuture.completedFuture(null);
+            }
+            splitRetries.addAndGet(failed.size());
+            log.warn("切分翻译部分失败，重新提交, failedCount:{}, chunkCount:{}, retry:{}", failed.size(), chunks.size(), retry + 1);
+            return translateChunks(chunks, failed, results, langCode, isOnline, retry + 1);
+        });
+    }
+
+    /**
+     * 批量翻译：相邻的短段落按tokens预算合并成一个prompt，译文按标记拆回
+     * 拆分对不上时这一组逐段重新翻译，保证结果与原文一一对应
+     */
+    @Override
+    public List<String> translateBatch(List<String> sources, String langCode, boolean isOnline) {
+        if (!packingEnabled || sources.size() <= 1) {
+            return translate(sources, langCode, isOnline);
+        }
+        List<Integer> ends = SegmentPacker.pack(sources, source -> tokenEstimator.countTokens(source),
+                packingTargetTokens, packingMaxSegments, packingMaxSegmentTokens);
+        List<CompletableFuture<List<String>>> futures = new ArrayList<>(ends.size());
+        int from = 0;
+        for (int end : ends) {
+            futures.add(translatePack(sources.subList(from, end), langCode, isOnline));
+            from = end;
+        }
+        List<List<String>> packResults = FutureUtil.collectFutures(futures);
+        List<String> results = new ArrayList<>(sources.size());
+        from = 0;
+        for (int i = 0; i < ends.size(); i++) {
+            int size = ends.get(i) - from;
+            List<String> packResult = packResults.get(i);
+            results.addAll(packResult == null || packResult.size() != size ? Collections.nCopies(size, null) : packResult);
+            from = ends.get(i);
+        }
+        return results;
+    }
+
+    private CompletableFuture<List<String>> translatePack(List<String> segments, String langCode, boolean isOnline) {
+        if (segments.size() == 1) {
+            return asyncTranslate(segments.getFirst(), langCode, isOnline).thenApply(Collections::singletonList);
+        }
+        packedPrompts.incrementAndGet();
+        packedSegments.addAndGet(segments.size());
+        String prompt = "translate the following:" + SegmentPacker.join(segments, StringUtil::escapeJson) + "<" + langCode + ">";
+        return submitPrompt(prompt, isOnline, true).thenCompose(text -> {
+            if (StringUtils.isBlank(text)) {
+                // 请求失败，与逐段翻译失败一样返回空串，不再放大请求
+                return CompletableFuture.completedFuture(Collections.nCopies(segments.size(), ""));
+            }
+            List<String> results = SegmentPacker.split(text, segments.size());
+            if (results != null) {
+                return CompletableFuture.completedFuture(results);
+            }
+            packFallbacks.incrementAndGet();
+            log.warn("合并翻译的结果无法按标记拆分，逐段重新翻译, segmentCount:{}", segments.size());
+            List<CompletableFuture<String>> futures = segments.stream().map(segment -> asyncTranslate(segment, langCode, isOnline)).toList();
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .thenApply(v -> futures.stream().map(CompletableFuture::join).toList());
+        });
+    }
+
+    private CompletableFuture<String> submitPrompt(String prompt, boolean isOnline) {
+        return submitPrompt(prompt, isOnline, false);
+    }
+
+    private CompletableFuture<String> submitPrompt(String prompt, boolean isOnline, boolean packed) {
         if(StringUtils.isBlank(prompt)){
             return CompletableFuture.completedFuture("");
         }
+        int promptTokens = tokenEstimator.countTokens(prompt);
+        int tokenCost = promptTokens + tokenEstimator.reserveCompletion(promptTokens);
+        if (tokenCost > SeedXCompletionRequest.MAX_TOKENS) {
+            log.error("当前文本token超过限制，tokenCost:{}", tokenCost);
+            return CompletableFuture.completedFuture("");
+        }
         CompletableFuture<String> future = new CompletableFuture<>();
         // 创建任务并添加到优先级队列
-        PriorityTask task = new PriorityTask(prompt, isOnline, future);
+        PriorityTask task = new PriorityTask(prompt, promptTokens, tokenCost, isOnline, packed, future, taskSequence.incrementAndGet());
         taskQueue.put(task);
 
         return future;
@@ -84,145 +374,347 @@ public class LocalSeedXTranslator implements Translator {
 
 
     // 优先级任务内部类
-    private class PriorityTask implements Runnable, Comparable<PriorityTask> {
+    private static class PriorityTask implements Comparable<PriorityTask> {
         private final String prompt;
+        private final int promptTokens;
+        private final int tokenCost;
         private final boolean isOnline;
+        // 多段合并的prompt
+        private final boolean packed;
         private final CompletableFuture<String> future;
         private final long sequenceNumber; // 用于保证相同优先级的任务按提交顺序执行
 
-        public PriorityTask(String prompt, boolean isOnline, CompletableFuture<String> future) {
+        public PriorityTask(String prompt, int promptTokens, int tokenCost, boolean isOnline, boolean packed,
+                            CompletableFuture<String> future, long sequenceNumber) {
             this.prompt = prompt;
+            this.promptTokens = promptTokens;
+            this.tokenCost = tokenCost;
             this.isOnline = isOnline;
+            this.packed = packed;
             this.future = future;
-            this.sequenceNumber = System.nanoTime();
+            this.sequenceNumber = sequenceNumber;
         }
 
         @Override
-        public void run() {
-            try {
-                String result = executeRequest();
-                future.complete(result);
-            } catch (Exception e) {
-                future.completeExceptionally(e);
+        public int compareTo(PriorityTask other) {
+            // 优先比较优先级：isOnline=true的优先级更高
+            if (this.isOnline && !other.isOnline) {
+                return -1; // 当前任务优先级更高
+            } else if (!this.isOnline && other.isOnline) {
+                return 1; // 其他任务优先级更高
+            } else {
+                // 相同优先级时，比较提交顺序
+                return Long.compare(this.sequenceNumber, other.sequenceNumber);
             }
         }
+    }
 
-        private String executeRequest() {
-            SeedXCompletionRequest request = new SeedXCompletionRequest(prompt);
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<SeedXCompletionRequest> requestEntity = new HttpEntity<>(request, headers);
-
-            int tokenCost = calculateTokenCost(prompt);
-            if (tokenCost > request.getMax_tokens()){
-                log.error("当前文本token超过限制，tokenCost:{}", tokenCost);
-                return "";
+    // 批量任务：异步获取tokens后一次请求，按choice的index把结果分发回各自的future
+    private void dispatchBatch(List<PriorityTask> tasks, int tokenCost) {
+        executeBatch(tasks, tokenCost, 0, null).whenComplete((results, e) -> {
+            if (e != null) {
+                log.error("seedx批量请求异常", e);
             }
-            log.info("调用seedx生成文本，prompt:{}，tokenCost:{}", prompt, tokenCost);
-
-            // 最多重试2次
-            for (int i = 0; i < 2; i++) {
-                if (!acquireTokens(currentSeedXTokens, tokenCost)) {
-                    log.warn("获取seedx tokens超时，放弃请求");
-                    continue;
-                }
+            for (int i = 0; i < tasks.size(); i++) {
+                String result = results == null ? null : results[i];
+                tasks.get(i).future.complete(result == null ? "" : result);
+            }
+        });
+    }
 
-                try {
-                    SeedXCompletionResponse response = restTemplate.postForObject(
-                            "http://localhost:8000/v1/completions",
-                            requestEntity,
-                            SeedXCompletionResponse.class
-                    );
-
-                    if (response != null && response.getChoices() != null && !response.getChoices().isEmpty()) {
-                        log.info("调用seedx生成文本成功, response:{}", JSON.toJSONString(response));
-                        String result = response.getChoices().stream()
-                                .map(SeedXCompletionResponse.Choice::getText)
-                                .toList()
-                                .getFirst();
-
-                        int index = result.indexOf("（注");
-                        if (index != -1) {
-                            result = result.substring(0, index).trim();
+    /**
+     * 选在途tokens最少的实例执行，失败时换一个实例重试
+     */
+    private CompletableFuture<String[]> executeBatch(List<PriorityTask> tasks, int tokenCost, int attempt, SeedXEndpointPool.Endpoint previous) {
+        int priority = tasks.getFirst().isOnline ? PRIORITY_ONLINE : PRIORITY_OFFLINE;
+        SeedXEndpointPool.Endpoint endpoint = endpointPool.choose(previous);
+        WeightedPermitPool tokenPool = endpoint.getTokenPool();
+        AdaptiveLimiter adaptiveLimiter = endpoint.getAdaptiveLimiter();
+        endpoint.getOutstandingTokens().addAndGet(tokenCost);
+        return tokenPool.acquire(tokenCost, priority, WAIT_TIMEOUT)
+                // 拿到tokens后才占用执行器，执行器拒绝时future立即失败，tokens在完成时统一归还
+                .thenCompose(v -> seedXExecutor.supplyAsync(() -> {
+                    boolean saturated = adaptiveLimiter != null && adaptiveLimiter.isSaturated();
+                    long start = System.currentTimeMillis();
+                    String[] results = requestSeedX(endpoint, tasks, tokenCost);
+                    if (results == null) {
+                        endpointPool.onFailure(endpoint);
+                    } else {
+                        endpointPool.onSuccess(endpoint);
+                    }
+                    if (adaptiveLimiter != null) {
+                        if (results == null) {
+                            adaptiveLimiter.onError();
+                        } else {
+                            adaptiveLimiter.onSuccess(System.currentTimeMillis() - start, tokenCost, tasks.size(), saturated);
                         }
-                        index = result.indexOf("[COT]");
-                        if (index != -1) {
-                            result = result.substring(0, index).trim();
+                    }
+                    return results;
+                }).whenComplete((results, e) -> tokenPool.release(tokenCost)))
+                .whenComplete((results, e) -> endpoint.getOutstandingTokens().addAndGet(-tokenCost))
+                .exceptionally(e -> {
+                    log.warn("获取seedx tokens超时或请求异常，放弃本次请求, tokenCost:{}", tokenCost, e);
+                    return null;
+                })
+                .thenCompose(results -> {
+                    if (results != null || attempt + 1 >= MAX_ATTEMPTS) {
+                        if (results == null) {
+                            log.error("请求seedx生成文本失败，promptCount:{}，tokenCost:{}", tasks.size(), tokenCost);
                         }
-                        return result.replace("\"", "'");
+                        return CompletableFuture.completedFuture(results);
+                    }
+                    return executeBatch(tasks, tokenCost, attempt + 1, endpoint);
+                });
+    }
+
+    /**
+     * 发送一批prompt，失败返回null
+     */
+    private String[] requestSeedX(SeedXEndpointPool.Endpoint endpoint, List<PriorityTask> tasks, int tokenCost) {
+        List<String> prompts = tasks.stream().map(task -> task.prompt).toList();
+        SeedXCompletionRequest request = new SeedXCompletionRequest(prompts);
+        if (tasks.getFirst().packed) {
+            request.setStop(SeedXCompletionRequest.PACKED_STOP);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<SeedXCompletionRequest> requestEntity = new HttpEntity<>(request, headers);
+        log.info("调用seedx生成文本，url:{}，promptCount:{}，tokenCost:{}", endpoint.getBaseUrl(), prompts.size(), tokenCost);
+
+        try {
+            SeedXCompletionResponse response = restTemplate.postForObject(
+                    endpoint.getCompletionsUrl(),
+                    requestEntity,
+                    SeedXCompletionResponse.class
+            );
+
+            if (response != null && response.getChoices() != null && !response.getChoices().isEmpty()) {
+                log.info("调用seedx生成文本成功, response:{}", JSON.toJSONString(response));
+                String[] results = new String[tasks.size()];
+                for (SeedXCompletionResponse.Choice choice : response.getChoices()) {
+                    if (choice.getIndex() >= 0 && choice.getIndex() < results.length && choice.getText() != null) {
+                        results[choice.getIndex()] = trimResult(choice.getText());
                     }
-                } catch (Exception e) {
-                    log.error("调用seedx生成文本失败, requestEntity:{}", JSON.toJSONString(requestEntity), e);
-                } finally {
-                    currentSeedXTokens.addAndGet(-tokenCost);
                 }
+                if (response.getUsage() != null) {
+                    // 用vllm统计的实际用量校准tokens估算
+                    tokenEstimator.calibrate(tasks.stream().mapToInt(task -> task.promptTokens).sum(),
+                            response.getUsage().getPrompt_tokens(), response.getUsage().getCompletion_tokens());
+                }
+                return results;
             }
-            log.error("请求seedx生成文本失败，tokenCost:{}", tokenCost);
-            return "";
+        } catch (Exception e) {
+            log.error("调用seedx生成文本失败, requestEntity:{}", JSON.toJSONString(requestEntity), e);
         }
+        return null;
+    }
 
-        @Override
-        public int compareTo(PriorityTask other) {
-            // 优先比较优先级：isOnline=true的优先级更高
-            if (this.isOnline && !other.isOnline) {
-                return -1; // 当前任务优先级更高
-            } else if (!this.isOnline && other.isOnline) {
-                return 1; // 其他任务优先级更高
-            } else {
-                // 相同优先级时，比较提交顺序
-                return Long.compare(this.sequenceNumber, other.sequenceNumber);
+    private static String buildPrompt(String source, String langCode) {
+        return "translate the following:" + StringUtil.escapeJson(source) + "<" + langCode + ">";
+    }
+
+    private static String trimResult(String result) {
+        for (String marker : TRIM_MARKERS) {
+            int index = result.indexOf(marker);
+            if (index != -1) {
+                result = result.substring(0, index).trim();
             }
         }
+        return result.replace("\"", "'");
     }
 
-    public int calculateTokenCost(String prompt) {
-        int tokenCount = encoding.countTokens(prompt);
-        return tokenCount + (Math.max(tokenCount, 30));
+    /**
+     * 流式翻译：以 stream=true 调用 seedx，边生成边回调增量译文，完成时返回完整译文
+     * 与批量请求一样异步等待 tokens，拿到后才占用 seedx 执行器发请求，等待期间不占线程
+     */
+    @Override
+    public CompletableFuture<String> asyncStreamTranslate(String source, String langCode, Consumer<String> onDelta) {
+        if (tokenEstimator.countTokens(source) > splitMaxChunkTokens) {
+            // 超长段落切块翻译，不走流式，完成后一次性回调
+            return translateLongSegment(source, langCode, true).thenApply(target -> {
+                onDelta.accept(target);
+                return target;
+            });
+        }
+        String prompt = buildPrompt(source, langCode);
+        int tokenCost = calculateTokenCost(prompt);
+        if (tokenCost > SeedXCompletionRequest.MAX_TOKENS) {
+            log.error("当前文本token超过限制，tokenCost:{}", tokenCost);
+            return CompletableFuture.completedFuture("");
+        }
+        SeedXCompletionRequest request = new SeedXCompletionRequest(prompt);
+        request.setStream(true);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+        HttpEntity<SeedXCompletionRequest> requestEntity = new HttpEntity<>(request, headers);
+
+        // 流式输出已经回调给调用方，失败时不换实例重试
+        SeedXEndpointPool.Endpoint endpoint = endpointPool.choose(null);
+        WeightedPermitPool tokenPool = endpoint.getTokenPool();
+        AdaptiveLimiter adaptiveLimiter = endpoint.getAdaptiveLimiter();
+        endpoint.getOutstandingTokens().addAndGet(tokenCost);
+        return tokenPool.acquire(tokenCost, PRIORITY_ONLINE, WAIT_TIMEOUT)
+                .thenCompose(v -> seedXExecutor.supplyAsync(() -> {
+                    boolean saturated = adaptiveLimiter != null && adaptiveLimiter.isSaturated();
+                    long start = System.currentTimeMillis();
+                    StreamingTrimmer trimmer = new StreamingTrimmer(onDelta);
+                    try {
+                        requestSeedXStream(endpoint, requestEntity, trimmer);
+                    } catch (RuntimeException e) {
+                        endpointPool.onFailure(endpoint);
+                        if (adaptiveLimiter != null) {
+                            adaptiveLimiter.onError();
+                        }
+                        throw e;
+                    }
+                    if (trimmer.getSinkFailure() != null) {
+                        // 调用方推送失败（客户端断开、SSE超时）不是 seedx 的问题，不计入实例健康和自适应限流
+                        log.warn("流式译文推送失败，中止生成: {}", trimmer.getSinkFailure().toString());
+                        throw trimmer.getSinkFailure();
+                    }
+                    endpointPool.onSuccess(endpoint);
+                    if (adaptiveLimiter != null) {
+                        adaptiveLimiter.onSuccess(System.currentTimeMillis() - start, tokenCost, 1, saturated);
+                    }
+                    return trimmer.finish();
+                }).whenComplete((target, e) -> tokenPool.release(tokenCost)))
+                .whenComplete((target, e) -> endpoint.getOutstandingTokens().addAndGet(-tokenCost));
     }
 
-    private boolean acquireTokens(AtomicInteger tokenCounter, int requiredTokens) {
-        long startTime = System.currentTimeMillis();
+    private void requestSeedXStream(SeedXEndpointPool.Endpoint endpoint, HttpEntity<SeedXCompletionRequest> requestEntity,
+                                    StreamingTrimmer trimmer) {
+        restTemplate.execute(endpoint.getCompletionsUrl(), HttpMethod.POST,
+                restTemplate.httpEntityCallback(requestEntity), response -> {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = reader.readLine()) != null && !trimmer.isStopped()) {
+                        if (!line.startsWith("data:")) {
+                            continue;
+                        }
+                        String data = line.substring("data:".length()).trim();
+                        if ("[DONE]".equals(data)) {
+                            break;
+                        }
+                        SeedXCompletionResponse chunk = JSON.parseObject(data, SeedXCompletionResponse.class);
+                        if (chunk != null && chunk.getChoices() != null) {
+                            chunk.getChoices().forEach(choice -> trimmer.append(choice.getText()));
+                        }
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * 流式输出的增量裁剪：与 trimResult 规则一致，遇到截断标记后停止输出，
+     * 末尾可能是截断标记前缀的部分先不输出，等后续内容确认
+     * 回调增量译文失败时记录异常并停止，不让它从 http 响应处理中抛出被当成 seedx 的错误
+     */
+    static class StreamingTrimmer {
+        private final Consumer<String> onDelta;
+        private final StringBuilder text = new StringBuilder();
+        private int emitted;
+        private boolean stopped;
+        @Getter
+        private RuntimeException sinkFailure;
+
+        StreamingTrimmer(Consumer<String> onDelta) {
+            this.onDelta = onDelta;
+        }
 
-        while (true) {
-            int current = tokenCounter.get();
-            int newCount = current + requiredTokens;
+        boolean isStopped() {
+            return stopped;
+        }
 
-            if (newCount <= LocalSeedXTranslator.seedXTotalMaxTokens) {
-                if (tokenCounter.compareAndSet(current, newCount)) {
-                    return true;
+        void append(String delta) {
+            if (stopped || delta == null || delta.isEmpty()) {
+                return;
+            }
+            text.append(delta);
+            int markerIndex = -1;
+            for (String marker : TRIM_MARKERS) {
+                int index = text.indexOf(marker);
+                if (index != -1 && (markerIndex == -1 || index < markerIndex)) {
+                    markerIndex = index;
                 }
             }
+            if (markerIndex != -1) {
+                stopped = true;
+                // 与 trimResult 一致，截断处之前的空白不输出
+                int end = markerIndex;
+                while (end > emitted && Character.isWhitespace(text.charAt(end - 1))) {
+                    end--;
+                }
+                emit(end);
+                return;
+            }
+            emit(text.length() - pendingMarkerPrefixLength());
+        }
 
-            if (System.currentTimeMillis() - startTime > WAIT_TIMEOUT) {
-                return false;
+        String finish() {
+            if (!stopped) {
+                emit(text.length());
             }
+            return text.substring(0, emitted).replace("\"", "'");
+        }
 
-            try {
-                log.info("{} tokens超过最大限制, 当前tokens:{}, 等待中...",
-                        "seedx", tokenCounter.get());
-                Thread.sleep(WAIT_INTERVAL);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return false;
+        private int pendingMarkerPrefixLength() {
+            int max = 0;
+            for (String marker : TRIM_MARKERS) {
+                for (int len = Math.min(marker.length() - 1, text.length()); len > max; len--) {
+                    if (text.lastIndexOf(marker.substring(0, len)) == text.length() - len) {
+                        max = len;
+                        break;
+                    }
+                }
+            }
+            return max;
+        }
+
+        private void emit(int end) {
+            if (end > emitted && sinkFailure == null) {
+                try {
+                    onDelta.accept(text.substring(emitted, end).replace("\"", "'"));
+                } catch (RuntimeException e) {
+                    sinkFailure = e;
+                    stopped = true;
+                    return;
+                }
+                emitted = end;
             }
         }
     }
 
+    public int calculateTokenCost(String prompt) {
+        int tokenCount = tokenEstimator.countTokens(prompt);
+        return tokenCount + tokenEstimator.reserveCompletion(tokenCount);
+    }
+
     @Setter
     @Getter
     public static class SeedXCompletionRequest {
 
+        public static final int MAX_TOKENS = 1750;
+        public static final String[] DEFAULT_STOP = {"###", "[COT]", "[END]", "（注", "----", "---", "\n\n", "（Translation", "< < < "};
+        // 合并prompt的译文每段一行，模型可能在段与段之间空一行，空行不能作为结束标记，否则只返回前几段
+        public static final String[] PACKED_STOP = Arrays.stream(DEFAULT_STOP).filter(stop -> !"\n\n".equals(stop)).toArray(String[]::new);
+
         private String model = "Seed-X";
-        private String prompt;
-        private Integer max_tokens = 1750;
+        // vllm的completions接口支持一次传入多个prompt
+        private List<String> prompt;
+        private Integer max_tokens = MAX_TOKENS;
         private Float temperature = 0.0f;
-        private String[] stop = {"###", "[COT]", "[END]", "（注", "----", "---", "\n\n", "（Translation", "< < < "};
+        private String[] stop = DEFAULT_STOP;
         private boolean stream = false;
 
 
         // 构造函数、getter和setter
         public SeedXCompletionRequest(String prompt) {
-            this.prompt = prompt;
+            this.prompt = List.of(prompt);
+        }
+
+        public SeedXCompletionRequest(List<String> prompts) {
+            this.prompt = prompts;
         }
     }
 
@@ -261,4 +753,24 @@ public class LocalSeedXTranslator implements Translator {
         return TranslatorType.LOCAL_SEED_X;
     }
 
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", taskQueue.size());
+        stats.put("endpoints", endpointPool.getStats());
+        stats.put("tokenEstimator", tokenEstimator.getStats());
+        stats.put("executor", seedXExecutor.getStats());
+        Map<String, Object> packing = new LinkedHashMap<>();
+        packing.put("packedPrompts", packedPrompts.get());
+        packing.put("packedSegments", packedSegments.get());
+        packing.put("fallbacks", packFallbacks.get());
+        stats.put("packing", packing);
+        Map<String, Object> split = new LinkedHashMap<>();
+        split.put("splitSegments", splitSegments.get());
+        split.put("chunks", splitChunks.get());
+        split.put("retriedChunks", splitRetries.get());
+        stats.put("split", split);
+        return stats;
+    }
+
 }
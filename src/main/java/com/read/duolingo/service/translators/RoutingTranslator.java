@@ -0,0 +1,316 @@
+package com.read.duolingo.service.translators;
+
+import com.read.duolingo.enums.TranslatorType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 按延迟路由的翻译引擎（TranslatorType.AUTO），用于在线阅读
+ * 1. 按 (引擎, langCode) 统计 EWMA 延迟、EWMA 错误率和最近的延迟分布
+ * 2. 每次请求选错误率低于阈值、EWMA 延迟最小的引擎；没有样本的引擎优先尝试，并按 explore-ratio 随机探测其他引擎，让统计保持最新
+ * 3. 在线请求可对冲：主引擎超过自身 p95 还没返回时，把同一请求发给排第二的引擎，取先返回的有效译文，取消另一个；
+ *    主引擎失败时立即发给第二个引擎
+ * 离线批量翻译不对冲，整批交给当前最优的引擎
+ * 失败的判定与翻译记忆一致：异常、空结果或原样返回
+ */
+@Slf4j
+@Component
+public class RoutingTranslator implements Translator {
+
+    private static final int LATENCY_WINDOW = 128;
+
+    @Resource
+    private LocalSeedXTranslator localSeedXTranslator;
+    @Resource
+    private AzureTranslator azureTranslator;
+    @Resource
+    private GoogleTranslator googleTranslator;
+
+    @Value("${translate.router.engines:LOCAL_SEED_X,AZURE,GOOGLE}")
+    private List<TranslatorType> engineTypes;
+    @Value("${translate.router.ewma-alpha:0.2}")
+    private double ewmaAlpha;
+    @Value("${translate.router.max-error-rate:0.5}")
+    private double maxErrorRate;
+    @Value("${translate.router.explore-ratio:0.05}")
+    private double exploreRatio;
+    @Value("${translate.router.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+    // 对冲等待时间取主引擎的 p95，不低于 min-delay；主引擎还没有样本时用 default-delay
+    @Value("${translate.router.hedge.min-delay-millis:50}")
+    private long hedgeMinDelayMillis;
+    @Value("${translate.router.hedge.default-delay-millis:1000}")
+    private long hedgeDefaultDelayMillis;
+
+    private final Map<TranslatorType, Translator> engines = new LinkedHashMap<>();
+    private final Map<String, EngineStats> stats = new ConcurrentHashMap<>();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+
+    private final ScheduledExecutorService hedgeTimer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("translate-hedge").factory());
+
+    @PostConstruct
+    public void init() {
+        Map<TranslatorType, Translator> available = Map.of(
+                TranslatorType.LOCAL_SEED_X, localSeedXTranslator,
+                TranslatorType.AZURE, azureTranslator,
+                TranslatorType.GOOGLE, googleTranslator);
+        for (TranslatorType engineType : engineTypes) {
+            Translator engine = available.get(engineType);
+            if (engine == null) {
+                throw new IllegalArgumentException("translate.router.engines 不支持: " + engineType);
+            }
+            engines.put(engineType, engine);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeTimer.shutdownNow();
+    }
+
+    @Override
+    public TranslatorType getTranslatorType() {
+        return TranslatorType.AUTO;
+    }
+
+    @Override
+    public CompletableFuture<String> asyncTranslate(String source, String langCode, boolean isOnline) {
+        List<TranslatorType> ranked = rank(langCode);
+        if (!isOnline || !hedgeEnabled || ranked.size() < 2) {
+            return call(ranked.getFirst(), source, langCode, isOnline);
+        }
+        return hedgedTranslate(ranked.get(0), ranked.get(1), source, langCode);
+    }
+
+    @Override
+    public List<String> translateBatch(List<String> sources, String langCode, boolean isOnline) {
+        if (isOnline) {
+            // 在线请求逐条路由，每条都可以对冲
+            return translate(sources, langCode, true);
+        }
+        return engines.get(rank(langCode).getFirst()).translateBatch(sources, langCode, false);
+    }
+
+    @Override
+    public CompletableFuture<String> asyncStreamTranslate(String source, String langCode, Consumer<String> onDelta) {
+        TranslatorType engineType = rank(langCode).getFirst();
+        EngineStats engineStats = getStats(engineType, langCode);
+        long start = System.nanoTime();
+        return engines.get(engineType).asyncStreamTranslate(source, langCode, onDelta).whenComplete((target, e) ->
+                engineStats.record(System.nanoTime() - start, e != null || !isValid(source, target)));
+    }
+
+    private CompletableFuture<String> hedgedTranslate(TranslatorType primaryType, TranslatorType secondaryType, String source, String langCode) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        List<CompletableFuture<String>> attempts = new CopyOnWriteArrayList<>();
+        AtomicBoolean hedged = new AtomicBoolean();
+        // 还没返回的请求数，在发出请求之前加一，全部失败（减到 0）时才返回失败结果
+        AtomicInteger outstanding = new AtomicInteger(1);
+        CompletableFuture<String> primary = call(primaryType, source, langCode, true);
+        attempts.add(primary);
+        Runnable onAttemptFailed = () -> {
+            if (outstanding.decrementAndGet() == 0) {
+                // 两个引擎都失败，沿用引擎失败时的返回值
+                result.complete(primary.isCompletedExceptionally() ? "" : primary.getNow(""));
+            }
+        };
+        BooleanSupplier startSecondary = () -> {
+            if (result.isDone() || !hedged.compareAndSet(false, true)) {
+                return false;
+            }
+            outstanding.incrementAndGet();
+            CompletableFuture<String> secondary = call(secondaryType, source, langCode, true);
+            attempts.add(secondary);
+            if (result.isDone()) {
+                secondary.cancel(true);
+            }
+            secondary.whenComplete((target, e) -> {
+                if (e == null && isValid(source, target) && result.complete(target)) {
+                    hedgeWins.incrementAndGet();
+                } else {
+                    onAttemptFailed.run();
+                }
+            });
+            return true;
+        };
+
+        primary.whenComplete((target, e) -> {
+            if (e == null && isValid(source, target)) {
+                result.complete(target);
+                return;
+            }
+            // 主引擎失败时还没对冲就立即发给第二个引擎
+            if (startSecondary.getAsBoolean()) {
+                failovers.incrementAndGet();
+            }
+            onAttemptFailed.run();
+        });
+
+        long delayMillis = getStats(primaryType, langCode).hedgeDelayMillis();
+        ScheduledFuture<?> hedgeTask = hedgeTimer.schedule(() -> {
+            if (startSecondary.getAsBoolean()) {
+                hedges.incrementAndGet();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        // 返回后取消还在进行的请求
+        result.whenComplete((target, e) -> {
+            hedgeTask.cancel(false);
+            attempts.forEach(attempt -> attempt.cancel(true));
+        });
+        return result;
+    }
+
+    /**
+     * 调用单个引擎并记录延迟和成败，每次调用只记录一次
+     * 被取消的请求（对冲中输掉的一方）不知道最终耗时，按删失样本记录：至少花了取消前已经过的时间
+     * 如果只丢弃这些样本，慢引擎的统计只剩下偶尔跑赢的快样本，延迟会被低估
+     */
+    private CompletableFuture<String> call(TranslatorType engineType, String source, String langCode, boolean isOnline) {
+        EngineStats engineStats = getStats(engineType, langCode);
+        long start = System.nanoTime();
+        AtomicBoolean recorded = new AtomicBoolean();
+        CompletableFuture<String> future = engines.get(engineType).asyncTranslate(source, langCode, isOnline);
+        CompletableFuture<String> tracked = new CompletableFuture<>();
+        future.whenComplete((target, e) -> {
+            if (recorded.compareAndSet(false, true)) {
+                engineStats.record(System.nanoTime() - start, e != null || !isValid(source, target));
+            }
+            if (e != null) {
+                tracked.completeExceptionally(e);
+            } else {
+                tracked.complete(target);
+            }
+        });
+        tracked.whenComplete((target, e) -> {
+            if (tracked.isCancelled()) {
+                if (recorded.compareAndSet(false, true)) {
+                    engineStats.recordCensored(System.nanoTime() - start);
+                }
+                future.cancel(true);
+            }
+        });
+        return tracked;
+    }
+
+    /**
+     * 按 langCode 给引擎排序：错误率未超过阈值的在前，组内没有样本的在前，其余按 EWMA 延迟从小到大
+     * 按 explore-ratio 随机把一个其他引擎提到第一位
+     */
+    private List<TranslatorType> rank(String langCode) {
+        List<TranslatorType> ranked = new ArrayList<>(engines.keySet());
+        ranked.sort(Comparator.comparing((TranslatorType type) -> getStats(type, langCode).errorRate() > maxErrorRate)
+                .thenComparing(type -> getStats(type, langCode).samples() > 0)
+                .thenComparingDouble(type -> getStats(type, langCode).ewmaLatencyMillis()));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (ranked.size() > 1 && random.nextDouble() < exploreRatio) {
+            Collections.swap(ranked, 0, 1 + random.nextInt(ranked.size() - 1));
+        }
+        return ranked;
+    }
+
+    private EngineStats getStats(TranslatorType engineType, String langCode) {
+        return stats.computeIfAbsent(engineType.name() + ":" + langCode, k -> new EngineStats());
+    }
+
+    private static boolean isValid(String source, String target) {
+        return StringUtils.isNotBlank(target) && !target.equals(source);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hedges", hedges.get());
+        result.put("hedgeWins", hedgeWins.get());
+        result.put("failovers", failovers.get());
+        Map<String, Object> engineStats = new TreeMap<>();
+        stats.forEach((key, value) -> engineStats.put(key, value.toMap()));
+        result.put("engines", engineStats);
+        return result;
+    }
+
+    /**
+     * 单个 (引擎, langCode) 的统计：EWMA 延迟、EWMA 错误率、最近 LATENCY_WINDOW 次成功（含被取消）请求的延迟
+     */
+    private class EngineStats {
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private int latencyCount;
+        private int latencyIndex;
+        private double ewmaLatencyMillis;
+        private double errorRate;
+        private long samples;
+
+        private synchronized void record(long latencyNanos, boolean error) {
+            samples++;
+            errorRate = samples == 1 ? (error ? 1 : 0) : errorRate + ewmaAlpha * ((error ? 1 : 0) - errorRate);
+            if (!error) {
+                recordLatency(latencyNanos);
+            }
+        }
+
+        /**
+         * 删失样本：只知道延迟不小于 latencyNanos，按这个下界计入延迟统计，不影响错误率
+         */
+        private synchronized void recordCensored(long latencyNanos) {
+            samples++;
+            recordLatency(latencyNanos);
+        }
+
+        private void recordLatency(long latencyNanos) {
+            double latencyMillis = latencyNanos / 1_000_000.0;
+            ewmaLatencyMillis = ewmaLatencyMillis == 0 ? latencyMillis : ewmaLatencyMillis + ewmaAlpha * (latencyMillis - ewmaLatencyMillis);
+            latencies[latencyIndex] = (long) latencyMillis;
+            latencyIndex = (latencyIndex + 1) % LATENCY_WINDOW;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_WINDOW);
+        }
+
+        private synchronized long samples() {
+            return samples;
+        }
+
+        private synchronized double errorRate() {
+            return errorRate;
+        }
+
+        private synchronized double ewmaLatencyMillis() {
+            return ewmaLatencyMillis;
+        }
+
+        private synchronized long hedgeDelayMillis() {
+            if (latencyCount == 0) {
+                return hedgeDefaultDelayMillis;
+            }
+            return Math.max(percentile(0.95), hedgeMinDelayMillis);
+        }
+
+        private long percentile(double p) {
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            return sorted[Math.min((int) Math.ceil(p * latencyCount) - 1, latencyCount - 1)];
+        }
+
+        private synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("samples", samples);
+            map.put("ewmaLatencyMillis", Math.round(ewmaLatencyMillis));
+            map.put("errorRate", Math.round(errorRate * 1000) / 1000.0);
+            map.put("p95Millis", latencyCount == 0 ? null : percentile(0.95));
+            return map;
+        }
+    }
+}
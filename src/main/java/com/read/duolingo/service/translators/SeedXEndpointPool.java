@@ -0,0 +1,159 @@
+package com.read.duolingo.service.translators;
+
+import com.read.duolingo.service.limiter.AdaptiveLimiter;
+import com.read.duolingo.service.limiter.WeightedPermitPool;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多个 vLLM 实例组成的 seedx 后端池
+ * 1. 每个实例有自己的 tokens 许可池（和自适应上限），互不影响
+ * 2. 每次请求选在途 tokens 占自身容量比例最小的健康实例
+ * 3. 连续失败达到阈值的实例被摘除，健康检查（GET /health）通过后恢复；健康检查失败也会摘除
+ *    健康检查在独立的线程池上对所有实例并发进行，一个实例超时不会拖慢其他实例的检查
+ * 4. 没有健康实例时仍按负载选一个，避免健康检查误判时整体不可用
+ */
+@Slf4j
+public class SeedXEndpointPool {
+
+    private final List<Endpoint> endpoints;
+    private final int failureThreshold;
+    private final RestTemplate probeTemplate;
+    private final ExecutorService probeExecutor;
+
+    public SeedXEndpointPool(List<Endpoint> endpoints, int failureThreshold, RestTemplate probeTemplate) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("seedx endpoints is empty");
+        }
+        this.endpoints = endpoints;
+        this.failureThreshold = failureThreshold;
+        this.probeTemplate = probeTemplate;
+        this.probeExecutor = Executors.newFixedThreadPool(endpoints.size(),
+                Thread.ofPlatform().daemon().name("seedx-probe-", 0).factory());
+    }
+
+    /**
+     * 选择实例
+     * @param exclude 重试时排除上一次失败的实例，只有一个实例时仍可选中
+     */
+    public Endpoint choose(Endpoint exclude) {
+        Endpoint best = null;
+        Endpoint fallback = null;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint == exclude && endpoints.size() > 1) {
+                continue;
+            }
+            if (fallback == null || endpoint.load() < fallback.load()) {
+                fallback = endpoint;
+            }
+            if (endpoint.healthy && (best == null || endpoint.load() < best.load())) {
+                best = endpoint;
+            }
+        }
+        return best != null ? best : fallback;
+    }
+
+    public void onSuccess(Endpoint endpoint) {
+        endpoint.requests.incrementAndGet();
+        endpoint.consecutiveFailures.set(0);
+    }
+
+    public void onFailure(Endpoint endpoint) {
+        endpoint.requests.incrementAndGet();
+        endpoint.failures.incrementAndGet();
+        if (endpoint.consecutiveFailures.incrementAndGet() >= failureThreshold && endpoint.healthy) {
+            endpoint.healthy = false;
+            log.warn("seedx实例连续失败，摘除, url:{}, consecutiveFailures:{}", endpoint.baseUrl, endpoint.consecutiveFailures.get());
+        }
+    }
+
+    /**
+     * 健康检查，并发探测所有实例，全部完成（或超时）后返回
+     */
+    public void probe() {
+        CompletableFuture.allOf(endpoints.stream()
+                .map(endpoint -> CompletableFuture.runAsync(() -> probe(endpoint), probeExecutor))
+                .toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void probe(Endpoint endpoint) {
+        boolean ok;
+        try {
+            ok = probeTemplate.getForEntity(endpoint.baseUrl + "/health", String.class).getStatusCode().is2xxSuccessful();
+        } catch (Exception e) {
+            ok = false;
+        }
+        if (ok && !endpoint.healthy) {
+            endpoint.consecutiveFailures.set(0);
+            endpoint.healthy = true;
+            log.info("seedx实例健康检查通过，恢复, url:{}", endpoint.baseUrl);
+        } else if (!ok && endpoint.healthy) {
+            endpoint.healthy = false;
+            log.warn("seedx实例健康检查失败，摘除, url:{}", endpoint.baseUrl);
+        }
+    }
+
+    public void shutdown() {
+        probeExecutor.shutdownNow();
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            Map<String, Object> endpointStats = new LinkedHashMap<>();
+            endpointStats.put("url", endpoint.baseUrl);
+            endpointStats.put("healthy", endpoint.healthy);
+            endpointStats.put("outstandingTokens", endpoint.outstandingTokens.get());
+            endpointStats.put("requests", endpoint.requests.get());
+            endpointStats.put("failures", endpoint.failures.get());
+            endpointStats.put("tokens", endpoint.tokenPool.getStats());
+            if (endpoint.adaptiveLimiter != null) {
+                endpointStats.put("adaptiveLimit", endpoint.adaptiveLimiter.getStats());
+            }
+            stats.add(endpointStats);
+        }
+        return stats;
+    }
+
+    @Getter
+    public static class Endpoint {
+        private final String baseUrl;
+        private final WeightedPermitPool tokenPool;
+        private final AdaptiveLimiter adaptiveLimiter;
+        // 已分配到该实例（含等待tokens）的tokens
+        private final AtomicInteger outstandingTokens = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private volatile boolean healthy = true;
+
+        public Endpoint(String baseUrl, WeightedPermitPool tokenPool, AdaptiveLimiter adaptiveLimiter) {
+            this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+            this.tokenPool = tokenPool;
+            this.adaptiveLimiter = adaptiveLimiter;
+        }
+
+        public String getCompletionsUrl() {
+            return baseUrl + "/v1/completions";
+        }
+
+        private double load() {
+            return (double) outstandingTokens.get() / Math.max(tokenPool.getCapacity(), 1);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.read.duolingo.service.translators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 把相邻的短段落合并成一个 prompt，减少请求数和每个 prompt 固定的指令/补全预留开销
+ * 合并格式为每段一行，行首带编号标记：
+ * [1] 第一段
+ * [2] 第二段
+ * 译文按行首标记拆回各段，标记缺失、重复或乱序时返回 null，由调用方逐段重新翻译
+ */
+public class SegmentPacker {
+
+    private static final Pattern MARKER = Pattern.compile("(?m)^\\s*\\[(\\d{1,3})]\\s*");
+
+    private SegmentPacker() {
+    }
+
+    /**
+     * 按顺序把段落分组，返回每组的结束下标（不含）
+     * 单段超过 maxSegmentTokens 的单独成组；其余相邻段落累计不超过 targetTokens 且不超过 maxSegments 条
+     */
+    public static List<Integer> pack(List<String> sources, ToIntFunction<String> tokenCounter,
+                                     int targetTokens, int maxSegments, int maxSegmentTokens) {
+        List<Integer> ends = new ArrayList<>();
+        int count = 0;
+        int tokens = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            int segmentTokens = tokenCounter.applyAsInt(sources.get(i));
+            boolean alone = segmentTokens > maxSegmentTokens;
+            if (count > 0 && (alone || count >= maxSegments || tokens + segmentTokens > targetTokens)) {
+                ends.add(i);
+                count = 0;
+                tokens = 0;
+            }
+            count++;
+            tokens += segmentTokens;
+            if (alone) {
+                ends.add(i + 1);
+                count = 0;
+                tokens = 0;
+            }
+        }
+        if (count > 0) {
+            ends.add(sources.size());
+        }
+        return ends;
+    }
+
+    /**
+     * 合并一组段落，escape 用于处理段落中的换行等字符，保证每段只占一行
+     */
+    public static String join(List<String> segments, UnaryOperator<String> escape) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < segments.size(); i++) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append('[').append(i + 1).append("] ").append(escape.apply(segments.get(i)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 按标记拆分译文，必须恰好是 [1]..[count] 依次出现且每段非空，否则返回 null
+     */
+    public static List<String> split(String text, int count) {
+        if (text == null) {
+            return null;
+        }
+        Matcher matcher = MARKER.matcher(text);
+        List<String> results = new ArrayList<>(count);
+        int contentStart = -1;
+        while (matcher.find()) {
+            int number = Integer.parseInt(matcher.group(1));
+            if (number != results.size() + (contentStart < 0 ? 1 : 2)) {
+                // 译文里正文恰好以 [n] 开头但编号对不上，当作正文处理
+                continue;
+            }
+            if (contentStart >= 0) {
+                results.add(text.substring(contentStart, matcher.start()).trim());
+            }
+            contentStart = matcher.end();
+        }
+        if (contentStart < 0) {
+            return null;
+        }
+        results.add(text.substring(contentStart).trim());
+        if (results.size() != count || results.stream().anyMatch(String::isEmpty)) {
+            return null;
+        }
+        return results;
+    }
+}
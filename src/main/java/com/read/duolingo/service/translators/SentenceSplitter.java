@@ -0,0 +1,149 @@
+package com.read.duolingo.service.translators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * 超长段落切分：按句子边界切成不超过 tokens 上限的若干块，分别翻译后按顺序拼回
+ * 1. 先按句末标点（。！？；… 以及后面跟空白的 . ! ? ;）切句，句末的引号、括号归前一句
+ * 2. 单句仍超过上限时按分句标点（，、, ;）再切
+ * 3. 还超过上限时按字符数硬切
+ * 4. 相邻的句子贪心合并，每块尽量接近上限
+ */
+public class SentenceSplitter {
+
+    private static final String CJK_SENTENCE_ENDS = "。！？；…";
+    private static final String LATIN_SENTENCE_ENDS = ".!?;";
+    private static final String CLAUSE_ENDS = "，、,；;：:";
+    private static final String CLOSING = "”’」』）】》)]\"'";
+    // 这些语言的译文句子之间不加空格
+    private static final Set<String> NO_SPACE_LANGS = Set.of("zh", "ja", "th");
+
+    private SentenceSplitter() {
+    }
+
+    public static List<String> split(String text, ToIntFunction<String> tokenCounter, int maxChunkTokens) {
+        List<String> pieces = new ArrayList<>();
+        List<Integer> pieceTokens = new ArrayList<>();
+        for (String sentence : splitAt(text, true)) {
+            int sentenceTokens = tokenCounter.applyAsInt(sentence);
+            if (sentenceTokens <= maxChunkTokens) {
+                pieces.add(sentence);
+                pieceTokens.add(sentenceTokens);
+                continue;
+            }
+            for (String clause : splitAt(sentence, false)) {
+                int tokens = tokenCounter.applyAsInt(clause);
+                if (tokens <= maxChunkTokens) {
+                    pieces.add(clause);
+                    pieceTokens.add(tokens);
+                    continue;
+                }
+                for (String part : hardSplit(clause, tokens, maxChunkTokens)) {
+                    pieces.add(part);
+                    pieceTokens.add(tokenCounter.applyAsInt(part));
+                }
+            }
+        }
+        // 贪心合并相邻的句子：按各句tokens累加，只在累加值超过上限时对拼接结果精确计数一次，避免每步重算整块
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int currentTokens = 0;
+        for (int i = 0; i < pieces.size(); i++) {
+            String piece = pieces.get(i);
+            int tokens = pieceTokens.get(i);
+            if (!current.isEmpty() && currentTokens + tokens > maxChunkTokens) {
+                // 估算按整块取整时分开累加会偏大，边界处以拼接后的实际计数为准
+                int merged = tokenCounter.applyAsInt(current + piece);
+                if (merged <= maxChunkTokens) {
+                    current.append(piece);
+                    currentTokens = merged;
+                    continue;
+                }
+                chunks.add(current.toString());
+                current.setLength(0);
+                currentTokens = 0;
+            }
+            current.append(piece);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+
+    /**
+     * 按顺序拼接各块译文
+     */
+    public static String join(List<String> translations, String langCode) {
+        String separator = NO_SPACE_LANGS.contains(langCode) ? "" : " ";
+        StringBuilder sb = new StringBuilder();
+        for (String translation : translations) {
+            String trimmed = translation.strip();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!sb.isEmpty()) {
+                sb.append(separator);
+            }
+            sb.append(trimmed);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 在句末（sentence=true）或分句（sentence=false）标点后切开，标点和紧跟的引号、括号、空白留在前一段
+     */
+    private static List<String> splitAt(String text, boolean sentence) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            boolean boundary;
+            if (sentence) {
+                boundary = CJK_SENTENCE_ENDS.indexOf(c) >= 0
+                        || (LATIN_SENTENCE_ENDS.indexOf(c) >= 0 && (i + 1 == text.length() || Character.isWhitespace(text.charAt(i + 1))
+                        || CLOSING.indexOf(text.charAt(i + 1)) >= 0));
+            } else {
+                boundary = CLAUSE_ENDS.indexOf(c) >= 0;
+            }
+            i++;
+            if (!boundary) {
+                continue;
+            }
+            while (i < text.length() && (CLOSING.indexOf(text.charAt(i)) >= 0 || text.charAt(i) == c
+                    || Character.isWhitespace(text.charAt(i)))) {
+                i++;
+            }
+            parts.add(text.substring(start, i));
+            start = i;
+        }
+        if (start < text.length()) {
+            parts.add(text.substring(start));
+        }
+        return parts;
+    }
+
+    /**
+     * 没有标点可切时按字符数平均切，不切断代理对
+     */
+    private static List<String> hardSplit(String text, int tokens, int maxChunkTokens) {
+        int count = (tokens + maxChunkTokens - 1) / maxChunkTokens;
+        int size = Math.max(text.length() / count, 1);
+        List<String> parts = new ArrayList<>(count);
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(start + size, text.length());
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end++;
+            }
+            parts.add(text.substring(start, end));
+            start = end;
+        }
+        return parts;
+    }
+}
@@ -1,10 +1,15 @@
 package com.read.duolingo.service.translators;
 
 import com.read.duolingo.enums.TranslatorType;
+import com.read.duolingo.utils.BatchUtil;
 import com.read.duolingo.utils.FutureUtil;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface Translator {
 
@@ -33,4 +38,67 @@ public interface Translator {
     }
 
     CompletableFuture<String> asyncTranslate(String source, String langCode, boolean isOnline);
+
+    /**
+     * 单次请求最多可以带多少条文本，1表示引擎没有原生批量接口
+     */
+    default int getBatchMaxSize() {
+        return 1;
+    }
+
+    /**
+     * 单次请求所有文本的字符数上限
+     */
+    default int getBatchMaxChars() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 批量翻译，按引擎声明的数量和字符数上限分组，每组一次请求，结果与原文一一对应
+     */
+    default List<String> translateBatch(List<String> sources, String langCode, boolean isOnline) {
+        if (getBatchMaxSize() <= 1) {
+            return translate(sources, langCode, isOnline);
+        }
+        List<List<String>> batches = BatchUtil.partition(sources, getBatchMaxSize(), getBatchMaxChars());
+        List<CompletableFuture<List<String>>> futures = batches.stream().map(batch -> asyncTranslateBatch(batch, langCode, isOnline)).toList();
+        List<List<String>> batchResults = FutureUtil.collectFutures(futures);
+        List<String> results = new ArrayList<>(sources.size());
+        for (int i = 0; i < batches.size(); i++) {
+            List<String> batchResult = batchResults.get(i);
+            if (batchResult == null || batchResult.size() != batches.get(i).size()) {
+                // 整批失败，对应位置填 null
+                batchResult = Collections.nCopies(batches.get(i).size(), null);
+            }
+            results.addAll(batchResult);
+        }
+        return results;
+    }
+
+    /**
+     * 一次请求翻译一组文本，引擎有原生批量接口时覆盖此方法
+     */
+    default CompletableFuture<List<String>> asyncTranslateBatch(List<String> sources, String langCode, boolean isOnline) {
+        List<CompletableFuture<String>> futures = sources.stream().map(source -> asyncTranslate(source, langCode, isOnline)).toList();
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * 流式翻译，译文分段回调给 onDelta，完成时返回完整译文
+     * 引擎不支持流式时一次性回调完整译文
+     */
+    default CompletableFuture<String> asyncStreamTranslate(String source, String langCode, Consumer<String> onDelta) {
+        return asyncTranslate(source, langCode, true).thenApply(target -> {
+            onDelta.accept(target);
+            return target;
+        });
+    }
+
+    /**
+     * 引擎运行指标
+     */
+    default Map<String, Object> getStats() {
+        return Map.of();
+    }
 }
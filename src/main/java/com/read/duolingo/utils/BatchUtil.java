@@ -0,0 +1,30 @@
+package com.read.duolingo.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchUtil {
+
+    /**
+     * 按数量和字符数上限把文本顺序切分成多组，单条超过字符上限的文本单独成组
+     */
+    public static List<List<String>> partition(List<String> sources, int maxSize, int maxChars) {
+        List<List<String>> batches = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int currentChars = 0;
+        for (String source : sources) {
+            int chars = source == null ? 0 : source.length();
+            if (!current.isEmpty() && (current.size() >= maxSize || currentChars + chars > maxChars)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentChars = 0;
+            }
+            current.add(source);
+            currentChars += chars;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+}
@@ -2,13 +2,24 @@ package com.read.duolingo.utils;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class FutureUtil {
 
+    /**
+     * 按顺序收集结果，失败或超时的位置填 null，保证结果与 futures 一一对应
+     */
     public static <T> List<T> collectFutures(List<CompletableFuture<T>> futures) {
         List<T> result = new java.util.ArrayList<>();
         futures.forEach(v -> {
@@ -16,8 +27,52 @@ public class FutureUtil {
                 result.add(v.get(100000, TimeUnit.MILLISECONDS));
             } catch (Exception e) {
                 log.error("Future 执行失败", e);
+                result.add(null);
             }
         });
         return result;
     }
+
+    @FunctionalInterface
+    public interface Stage<T, R> {
+        CompletableFuture<R> submit(T item) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Sink<T, R> {
+        void accept(T item, R result) throws IOException;
+    }
+
+    /**
+     * 有界有序流水线：最多 maxInFlight 个任务同时处理，结果严格按提交顺序在当前线程交给 sink，
+     * 队头没处理完时不会继续提交新任务，形成背压
+     */
+    public static <T, R> void runOrdered(Iterator<T> items, int maxInFlight, Stage<T, R> stage, Sink<T, R> sink) throws IOException {
+        Deque<Map.Entry<T, CompletableFuture<R>>> window = new ArrayDeque<>();
+        try {
+            while (items.hasNext() || !window.isEmpty()) {
+                while (window.size() < Math.max(maxInFlight, 1) && items.hasNext()) {
+                    T item = items.next();
+                    window.addLast(new AbstractMap.SimpleImmutableEntry<>(item, stage.submit(item)));
+                }
+                Map.Entry<T, CompletableFuture<R>> head = window.pollFirst();
+                R result;
+                try {
+                    result = head.getValue().join();
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause() == null ? e : e.getCause();
+                    if (cause instanceof UncheckedIOException uncheckedIOException) {
+                        throw uncheckedIOException.getCause();
+                    }
+                    if (cause instanceof RuntimeException runtimeException) {
+                        throw runtimeException;
+                    }
+                    throw new RuntimeException(cause);
+                }
+                sink.accept(head.getKey(), result);
+            }
+        } finally {
+            window.forEach(entry -> entry.getValue().cancel(true));
+        }
+    }
 }
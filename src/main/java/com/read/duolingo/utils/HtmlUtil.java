@@ -3,23 +3,31 @@ package com.read.duolingo.utils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.*;
 import org.jsoup.parser.Parser;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
-import java.util.regex.Pattern;
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
 
 public class HtmlUtil {
 
     private static final String TRANSLATION_ATTR = "data-translation"; // 统一的属性名
     private static final String ORIGINAL_VALUE = "original"; // 原文标签的值
     private static final String TRANSLATED_VALUE = "translated"; // 翻译标签的值
-    private static final Pattern CHINESE_PATTERN = Pattern.compile("[\\u4e00-\\u9fa5]");
-    private static final Pattern SKIP_TAGS = Pattern.compile("(script|style|code|pre)", Pattern.CASE_INSENSITIVE);
+    private static final String CONTAINER_CLASS = "translation-container"; // 译文容器的class
+    private static final Set<String> SKIP_TAGS = Set.of("script", "style", "code", "pre");
 
 
     // 定义要添加的CSS样式
@@ -38,49 +46,152 @@ public class HtmlUtil {
             </style>
         """;
 
+    // 解析、渲染是纯CPU操作，所有书共用一个线程池
+    private static final ExecutorService PARSE_RENDER_EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            Thread.ofPlatform().daemon().name("html-parse-render-", 0).factory());
+
+    /**
+     * 一本书内默认同时处理的章节数
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
     public static void processHtmlFiles(Path rootDir, BiFunction<Integer, List<String>, List<String>> function) throws IOException {
+        processHtmlFiles(rootDir, DEFAULT_PARALLELISM, function);
+    }
+
+    /**
+     * 处理目录下所有 HTML 文件，最多 parallelism 个章节同时在流水线中，按路径顺序写回
+     */
+    public static void processHtmlFiles(Path rootDir, int parallelism, BiFunction<Integer, List<String>, List<String>> function) throws IOException {
+        List<Path> htmlFiles;
+        try (Stream<Path> paths = Files.walk(rootDir)) {
+            htmlFiles = paths.filter(path -> isHtmlFile(path.toString())).sorted().toList();
+        }
         // 统计需要翻译的html文本数量
-        int count = countNeedTranslateHtml(rootDir);
+        int count = htmlFiles.size();
         AtomicInteger current = new AtomicInteger(0);
-        Files.walk(rootDir)
-                .filter(path -> path.toString().toLowerCase().endsWith(".html") ||
-                        path.toString().toLowerCase().endsWith(".xhtml"))
-                .forEach(path -> {
-                    try {
-                        String content = Files.readString(path, StandardCharsets.UTF_8);
-                        String processedContent = processHtmlFile(content, (current.get()*100)/count, function);
+        ExecutorService translateExecutor = newTranslateExecutor(parallelism);
+        try {
+            FutureUtil.runOrdered(htmlFiles.iterator(), parallelism,
+                    path -> processHtmlFileAsync(Files.readString(path, StandardCharsets.UTF_8), () -> (current.get() * 100) / count,
+                                    Integer.MAX_VALUE, 0, weight -> {}, function, translateExecutor)
+                            .exceptionally(e -> {
+                                throw new RuntimeException("处理 HTML 文件时出错: " + path + " - " + e.getMessage(), e);
+                            }),
+                    (path, processedContent) -> {
                         // 保存修改后的文件
                         Files.writeString(path, processedContent, StandardCharsets.UTF_8);
                         current.addAndGet(1);
-                    } catch (Exception e) {
-                        throw new RuntimeException("处理 HTML 文件时出错: " + path + " - " + e.getMessage());
-                    }
-                });
+                    });
+        } finally {
+            translateExecutor.shutdownNow();
+        }
     }
 
+    public static void processEpub(String sourcePath, String targetPath, int parallelism, BiFunction<Integer, List<String>, List<String>> function) throws IOException {
+        processEpub(sourcePath, targetPath, parallelism, Integer.MAX_VALUE, weight -> {}, ChapterCache.NONE, function);
+    }
 
     /**
-     * 计算当前文件有多少个需要翻译的html文本
-     * @return
-     * @throws IOException
+     * 流式处理 EPUB 压缩包：只解压并翻译 (X)HTML 文件，结果直接写入目标压缩包
+     * 章节按 解析提取 -> 翻译 -> 渲染 分阶段流转，最多 parallelism 个章节同时在流水线中，按原顺序写入
+     * 一个章节的文本按 sliceSize 条分片依次交给 function，每片完成后按该片原文字数占章节的比例，
+     * 把章节 HTML 字节数的增量回调给 onProgress；全部完成时回调的总和等于所有 HTML 文件的大小
+     * 章节内容在 chapterCache 中命中时直接使用缓存的译文，不再解析和翻译；完整翻译的章节写入 chapterCache
      */
-    private static int countNeedTranslateHtml(Path rootDir) {
+    public static void processEpub(String sourcePath, String targetPath, int parallelism, int sliceSize, LongConsumer onProgress,
+                                   ChapterCache chapterCache, BiFunction<Integer, List<String>, List<String>> function) throws IOException {
         // 统计需要翻译的html文本数量
-        AtomicInteger count = new AtomicInteger();
+        int count = ZipUtil.countEntries(sourcePath, HtmlUtil::isHtmlFile);
+        AtomicInteger current = new AtomicInteger(0);
+        ExecutorService translateExecutor = newTranslateExecutor(parallelism);
         try {
-            Files.walk(rootDir)
-                    .filter(path -> path.toString().toLowerCase().endsWith(".html") ||
-                            path.toString().toLowerCase().endsWith(".xhtml"))
-                    .forEach(path -> {
-                        count.addAndGet(1);
-                    });
-        } catch (IOException e) {
-            throw new RuntimeException("遍历目录时出错: " + rootDir + " - " + e.getMessage());
+            ZipUtil.transformEpub(sourcePath, targetPath, HtmlUtil::isHtmlFile, parallelism, (entryName, content) -> {
+                byte[] cached = chapterCache.get(content);
+                if (cached != null) {
+                    onProgress.accept(content.length);
+                    current.addAndGet(1);
+                    return CompletableFuture.completedFuture(cached);
+                }
+                return translateHtmlFileAsync(new String(content, StandardCharsets.UTF_8), () -> (current.get() * 100) / count,
+                                sliceSize, content.length, onProgress, function, translateExecutor)
+                        .thenApplyAsync(parsedHtml -> {
+                            byte[] processedContent = parsedHtml.render().getBytes(StandardCharsets.UTF_8);
+                            // 有段落翻译失败的章节不缓存，下次还要重新翻译
+                            if (parsedHtml.isFullyTranslated()) {
+                                chapterCache.put(content, processedContent);
+                            }
+                            current.addAndGet(1);
+                            return processedContent;
+                        }, PARSE_RENDER_EXECUTOR)
+                        .exceptionally(e -> {
+                            throw new RuntimeException("处理 HTML 文件时出错: " + entryName + " - " + e.getMessage(), e);
+                        });
+            });
+        } finally {
+            translateExecutor.shutdownNow();
         }
-        return count.get();
+    }
+
+    /**
+     * 章节级翻译缓存，以章节原始内容为key
+     */
+    public interface ChapterCache {
+        ChapterCache NONE = new ChapterCache() {
+            @Override
+            public byte[] get(byte[] content) {
+                return null;
+            }
+
+            @Override
+            public void put(byte[] content, byte[] translated) {
+            }
+        };
+
+        byte[] get(byte[] content);
+
+        void put(byte[] content, byte[] translated);
+    }
+
+    public static boolean isHtmlFile(String fileName) {
+        String lowerName = fileName.toLowerCase();
+        return lowerName.endsWith(".html") || lowerName.endsWith(".xhtml");
+    }
+
+    private static ExecutorService newTranslateExecutor(int parallelism) {
+        return Executors.newFixedThreadPool(Math.max(parallelism, 1), Thread.ofPlatform().daemon().name("chapter-translate-", 0).factory());
+    }
+
+    private static CompletableFuture<String> processHtmlFileAsync(String htmlContent, IntSupplier progress,
+                                                                  int sliceSize, long chapterWeight, LongConsumer onProgress,
+                                                                  BiFunction<Integer, List<String>, List<String>> function,
+                                                                  Executor translateExecutor) {
+        return translateHtmlFileAsync(htmlContent, progress, sliceSize, chapterWeight, onProgress, function, translateExecutor)
+                .thenApplyAsync(ParsedHtml::render, PARSE_RENDER_EXECUTOR);
+    }
+
+    private static CompletableFuture<ParsedHtml> translateHtmlFileAsync(String htmlContent, IntSupplier progress,
+                                                                        int sliceSize, long chapterWeight, LongConsumer onProgress,
+                                                                        BiFunction<Integer, List<String>, List<String>> function,
+                                                                        Executor translateExecutor) {
+        return CompletableFuture.supplyAsync(() -> parseHtmlFile(htmlContent), PARSE_RENDER_EXECUTOR)
+                .thenApplyAsync(parsedHtml -> {
+                    parsedHtml.translate(progress.getAsInt(), sliceSize, chapterWeight, onProgress, function);
+                    return parsedHtml;
+                }, translateExecutor);
     }
 
     public static String processHtmlFile(String htmlContent, int progress, BiFunction<Integer, List<String>, List<String>> function) throws IOException {
+        ParsedHtml parsedHtml = parseHtmlFile(htmlContent);
+        parsedHtml.translate(progress, function);
+        return parsedHtml.render();
+    }
+
+    /**
+     * 解析 HTML 并提取需要翻译的文本节点
+     */
+    public static ParsedHtml parseHtmlFile(String htmlContent) {
         // 提取原始XML声明
         String xmlDeclaration = "";
         if (htmlContent.startsWith("<?xml")) {
@@ -127,27 +238,113 @@ public class HtmlUtil {
         // 添加翻译CSS和JS到<head>
         addTranslationStyles(doc);
 
-        // 处理正文内容
-        Element body = doc.body();
-        processBody(body, progress, function);
+        // 提取正文中需要翻译的文本节点
+        return new ParsedHtml(doc, isXhtml, xmlDeclaration, originalDoctype, collectTextNodes(doc.body()));
+    }
 
-        // 获取处理后的HTML
-        String processedHtml = doc.outerHtml();
+    /**
+     * 解析后的 HTML，流水线各阶段之间传递
+     */
+    public static class ParsedHtml {
+        private final Document doc;
+        private final boolean isXhtml;
+        private final String xmlDeclaration;
+        private final String originalDoctype;
+        private final List<TextNode> textNodes;
+        private List<String> translations;
+
+        private ParsedHtml(Document doc, boolean isXhtml, String xmlDeclaration, String originalDoctype, List<TextNode> textNodes) {
+            this.doc = doc;
+            this.isXhtml = isXhtml;
+            this.xmlDeclaration = xmlDeclaration;
+            this.originalDoctype = originalDoctype;
+            this.textNodes = textNodes;
+        }
 
-        // 为XHTML手动添加原始声明
-        if (isXhtml) {
-            StringBuilder result = new StringBuilder();
-            if (!xmlDeclaration.isEmpty()) {
-                result.append(xmlDeclaration).append("\n");
+        /**
+         * 需要翻译的原文
+         */
+        public List<String> getSources() {
+            return textNodes.stream().map(TextNode::getWholeText).toList();
+        }
+
+        public void translate(int progress, BiFunction<Integer, List<String>, List<String>> function) {
+            translate(progress, Integer.MAX_VALUE, 0, weight -> {}, function);
+        }
+
+        /**
+         * 分片翻译，每片完成后回调进度增量，所有分片完成时回调的总和等于 chapterWeight
+         */
+        public void translate(int progress, int sliceSize, long chapterWeight, LongConsumer onProgress,
+                              BiFunction<Integer, List<String>, List<String>> function) {
+            if (textNodes.isEmpty()) {
+                translations = List.of();
+                onProgress.accept(chapterWeight);
+                return;
             }
-            if (!originalDoctype.isEmpty()) {
-                result.append(originalDoctype).append("\n");
+            List<String> sources = getSources();
+            long totalChars = Math.max(sources.stream().mapToLong(String::length).sum(), 1);
+            List<String> results = new ArrayList<>(sources.size());
+            long doneChars = 0;
+            long reported = 0;
+            int from = 0;
+            while (from < sources.size()) {
+                int to = sliceSize >= sources.size() - from ? sources.size() : from + sliceSize;
+                List<String> slice = sources.subList(from, to);
+                // 执行批量翻译
+                List<String> sliceResults = function.apply(progress, slice);
+                for (int i = 0; i < slice.size(); i++) {
+                    results.add(sliceResults != null && i < sliceResults.size() ? sliceResults.get(i) : null);
+                    doneChars += slice.get(i).length();
+                }
+                long weight = to == sources.size() ? chapterWeight : chapterWeight * doneChars / totalChars;
+                onProgress.accept(weight - reported);
+                reported = weight;
+                from = to;
             }
-            result.append(processedHtml);
-            return result.toString();
+            translations = results;
         }
 
-        return processedHtml;
+        /**
+         * 有需要翻译的文本，且每段都拿到了译文；空结果或原样返回按翻译失败处理（与翻译记忆一致）
+         */
+        public boolean isFullyTranslated() {
+            if (textNodes.isEmpty() || translations == null || translations.size() != textNodes.size()) {
+                return false;
+            }
+            for (int i = 0; i < textNodes.size(); i++) {
+                String translation = translations.get(i);
+                if (translation == null || translation.isBlank() || translation.equals(textNodes.get(i).getWholeText())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 替换译文并输出 HTML
+         */
+        public String render() {
+            batchProcessTextNodes(textNodes, translations);
+
+            // 获取处理后的HTML
+            String processedHtml = doc.outerHtml();
+
+            // 为XHTML手动添加原始声明
+            if (isXhtml) {
+                StringBuilder result = new StringBuilder();
+                if (!xmlDeclaration.isEmpty()) {
+                    result.append(xmlDeclaration).append("\n");
+                }
+                if (!originalDoctype.isEmpty()) {
+                    result.append(originalDoctype).append("\n");
+                }
+                result.append(processedHtml);
+                return result.toString();
+            }
+
+            return processedHtml;
+        }
     }
 
     private static void addTranslationStyles(Document doc) {
@@ -166,56 +363,40 @@ public class HtmlUtil {
         }
     }
 
-    private static void processBody(Element body, int progress, BiFunction<Integer, List<String>, List<String>> function) {
+    /**
+     * 一次遍历收集需要翻译的文本节点
+     * 跳过的元素（script/style/code/pre、已有的译文容器）整棵子树直接跳过，不再为每个节点回溯祖先
+     */
+    public static List<TextNode> collectTextNodes(Element root) {
         List<TextNode> textNodes = new ArrayList<>();
-        collectTextNodes(body, textNodes);
-        batchProcessTextNodes(textNodes, progress, function);
-    }
-
-    private static boolean isProcessed(Node node) {
-        if (node instanceof Element element) {
-            return element.hasClass("translation-container") ||
-                    element.parents().stream().anyMatch(e -> e.hasClass("translation-container"));
+        if (root == null) {
+            return textNodes;
         }
-        return false;
-    }
-
-    private static void collectTextNodes(Element element, List<TextNode> textNodes) {
-        if (shouldSkipElement(element) || isProcessed(element)) {
-            return;
-        }
-
-        for (Node node : element.childNodes()) {
-            if (node instanceof Element childElement) {
-                collectTextNodes(childElement, textNodes);
-            } else if (node instanceof TextNode textNode) {
-                // 检查文本节点是否已被包裹在翻译容器中
-                if (isProcessed(textNode)) continue;
-
-                String text = textNode.getWholeText().trim();
-                if (!text.isEmpty() && containsChinese(text)) {
+        NodeTraversor.filter(new NodeFilter() {
+            @Override
+            public FilterResult head(Node node, int depth) {
+                if (node instanceof Element element) {
+                    return shouldSkipElement(element) ? FilterResult.SKIP_ENTIRELY : FilterResult.CONTINUE;
+                }
+                if (node instanceof TextNode textNode && containsChinese(textNode.getWholeText())) {
                     textNodes.add(textNode);
                 }
+                return FilterResult.CONTINUE;
             }
-        }
-    }
 
-    private static void batchProcessTextNodes(List<TextNode> textNodes, int progress, BiFunction<Integer, List<String>, List<String>> function) {
-        // 过滤掉已被处理的节点
-        List<TextNode> validBatch = textNodes.stream()
-                .filter(node -> !isProcessed(node))
-                .toList();
-
-        if (validBatch.isEmpty()) return;
-
-        // 准备批量文本 - 添加序号前缀
-        List<String> originalTexts = validBatch.stream().map(TextNode::getWholeText).toList();
+            @Override
+            public FilterResult tail(Node node, int depth) {
+                return FilterResult.CONTINUE;
+            }
+        }, root);
+        return textNodes;
+    }
 
-        // 执行批量翻译
-        List<String> translations = function.apply(progress, originalTexts);
+    private static void batchProcessTextNodes(List<TextNode> validBatch, List<String> translations) {
+        if (validBatch.isEmpty() || translations == null) return;
 
         // 替换节点
-        for (int i = 0; i < validBatch.size(); i++) {
+        for (int i = 0; i < validBatch.size() && i < translations.size(); i++) {
             String translation = translations.get(i);
             TextNode node = validBatch.get(i);
             if (translation != null && !translation.isEmpty()) {
@@ -228,14 +409,14 @@ public class HtmlUtil {
 
 
     private static void replaceTextNode(TextNode textNode, String translatedText) {
-        // 确保节点尚未被处理
-        if (isProcessed(textNode)) {
+        // 确保节点尚未被处理（已被替换的节点没有父节点）
+        if (textNode.parentNode() == null) {
             return;
         }
 
         String originalText = textNode.getWholeText().trim();
 
-        Element container = new Element("div").addClass("translation-container");
+        Element container = new Element("div").addClass(CONTAINER_CLASS);
         container.appendChild(new Element("span")
                 .attr(TRANSLATION_ATTR, ORIGINAL_VALUE)
                 .addClass("original-text")
@@ -250,14 +431,24 @@ public class HtmlUtil {
 
 
     private static boolean shouldSkipElement(Element element) {
-        // 跳过特殊标签和已处理的翻译容器
-        return SKIP_TAGS.matcher(element.tagName()).matches() ||
-                element.hasClass("translation-container") ||
-                element.parents().stream().anyMatch(e -> e.hasClass("translation-container"));
+        // 跳过特殊标签和已处理的翻译容器，容器内的节点随容器整棵跳过，不需要再检查祖先
+        return SKIP_TAGS.contains(element.normalName()) || element.hasClass(CONTAINER_CLASS);
     }
 
+    /**
+     * 是否包含中文（CJK 统一汉字 U+4E00 ~ U+9FA5），逐字符比较，不分配对象
+     */
     private static boolean containsChinese(String text) {
-        return text != null && CHINESE_PATTERN.matcher(text).find();
+        if (text == null) {
+            return false;
+        }
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '\u4e00' && c <= '\u9fa5') {
+                return true;
+            }
+        }
+        return false;
     }
 
 }
@@ -0,0 +1,49 @@
+package com.read.duolingo.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并同时进行的相同请求：同一个 key 同一时刻只有一个执行者，其余调用方共用执行者的 future
+ * 执行者拿到结果后必须调用 complete，失败时也要调用（结果为 null），否则跟随者会一直等到超时
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong followers = new AtomicLong();
+
+    /**
+     * 登记执行
+     * @param flight 调用方准备好的 future
+     * @return null-调用方成为执行者；否则为正在执行的 future，调用方等它即可
+     */
+    public CompletableFuture<V> join(K key, CompletableFuture<V> flight) {
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing == null) {
+            leaders.incrementAndGet();
+        } else {
+            followers.incrementAndGet();
+        }
+        return existing;
+    }
+
+    /**
+     * 执行者结束，先完成再移除，移除前到达的请求可以直接拿到结果
+     */
+    public void complete(K key, CompletableFuture<V> flight, V value) {
+        flight.complete(value);
+        inFlight.remove(key, flight);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.size());
+        stats.put("leaders", leaders.get());
+        stats.put("coalesced", followers.get());
+        return stats;
+    }
+}
@@ -1,5 +1,9 @@
 package com.read.duolingo.utils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
 public class StringUtil {
 
     public static String escapeJson(String text) {
@@ -10,4 +14,46 @@ public class StringUtil {
                 .replace("\r", "\\r")
                 .replace("\t", "\\t");
     }
+
+    /**
+     * 归一化文本：去掉首尾空白，连续空白合并为一个空格
+     */
+    public static String normalizeWhitespace(String text) {
+        if (text == null) return "";
+        String stripped = text.strip();
+        StringBuilder sb = new StringBuilder(stripped.length());
+        boolean lastWhitespace = false;
+        for (int i = 0; i < stripped.length(); i++) {
+            char c = stripped.charAt(i);
+            if (Character.isWhitespace(c) || c == '\u00A0') {
+                if (!lastWhitespace) {
+                    sb.append(' ');
+                }
+                lastWhitespace = true;
+            } else {
+                sb.append(c);
+                lastWhitespace = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    public static String md5Hex(String text) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            return HexFormat.of().formatHex(md.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            // 降级处理
+            return Integer.toHexString(text.hashCode());
+        }
+    }
+
+    public static String sha256Hex(byte[] content) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(content));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
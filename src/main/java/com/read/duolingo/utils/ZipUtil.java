@@ -1,15 +1,33 @@
 package com.read.duolingo.utils;
 
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 public class ZipUtil {
 
+    private static final String MIMETYPE_ENTRY = "mimetype";
+    private static final byte[] EPUB_MIMETYPE = "application/epub+zip".getBytes(StandardCharsets.US_ASCII);
+
+    @FunctionalInterface
+    public interface EntryTransformer {
+        CompletableFuture<byte[]> transform(String entryName, byte[] content) throws IOException;
+    }
+
     public static void unzipEpub(String epubPath, Path destDir) throws IOException {
         try (ZipFile zipFile = new ZipFile(new File(epubPath))) {
             Enumeration<? extends ZipEntry> entries = zipFile.entries();
@@ -54,4 +72,105 @@ public class ZipUtil {
         }
     }
 
+    /**
+     * 统计压缩包中满足条件的文件数量，只读中央目录
+     */
+    public static int countEntries(String epubPath, Predicate<String> filter) throws IOException {
+        int count = 0;
+        try (ZipFile zipFile = new ZipFile(new File(epubPath))) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && filter.test(entry.getName())) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 统计符合条件的文件解压后的总大小
+     */
+    public static long sumEntrySizes(String epubPath, Predicate<String> filter) throws IOException {
+        long total = 0;
+        try (ZipFile zipFile = new ZipFile(new File(epubPath))) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && filter.test(entry.getName())) {
+                    total += Math.max(entry.getSize(), 0);
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 流式处理 EPUB：直接从源压缩包读、往目标压缩包写，不落临时目录
+     * mimetype 以 STORED 方式写在第一个；其余不需要处理的文件（图片、字体、css等）直接拷贝原始压缩数据，不解压也不重新压缩；
+     * 需要处理的文件最后按原顺序交给 transformer 异步处理，最多 maxInFlight 个同时处理，结果按顺序写入，保证输出稳定
+     */
+    public static void transformEpub(String sourcePath, String targetPath, Predicate<String> shouldTransform,
+                                     int maxInFlight, EntryTransformer transformer) throws IOException {
+        try (org.apache.commons.compress.archivers.zip.ZipFile zipFile =
+                     org.apache.commons.compress.archivers.zip.ZipFile.builder().setFile(sourcePath).get();
+             ZipArchiveOutputStream zos = new ZipArchiveOutputStream(Paths.get(targetPath))) {
+            // mimetype 必须是第一个且不压缩
+            ZipArchiveEntry mimetypeEntry = zipFile.getEntry(MIMETYPE_ENTRY);
+            byte[] mimetype = EPUB_MIMETYPE;
+            if (mimetypeEntry != null) {
+                try (InputStream in = zipFile.getInputStream(mimetypeEntry)) {
+                    mimetype = in.readAllBytes();
+                }
+            }
+            writeStoredEntry(zos, MIMETYPE_ENTRY, mimetype);
+
+            List<ZipArchiveEntry> transformEntries = new ArrayList<>();
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                if (MIMETYPE_ENTRY.equals(entry.getName())) {
+                    continue;
+                }
+                if (entry.isDirectory() || !shouldTransform.test(entry.getName())) {
+                    try (InputStream raw = zipFile.getRawInputStream(entry)) {
+                        zos.addRawArchiveEntry(entry, raw);
+                    }
+                } else {
+                    transformEntries.add(entry);
+                }
+            }
+
+            FutureUtil.runOrdered(transformEntries.iterator(), maxInFlight, entry -> {
+                byte[] content;
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    content = in.readAllBytes();
+                }
+                return transformer.transform(entry.getName(), content);
+            }, (entry, transformed) -> {
+                ZipArchiveEntry newEntry = new ZipArchiveEntry(entry.getName());
+                newEntry.setMethod(ZipEntry.DEFLATED);
+                newEntry.setTime(entry.getTime());
+                zos.putArchiveEntry(newEntry);
+                zos.write(transformed);
+                zos.closeArchiveEntry();
+            });
+            zos.finish();
+        }
+    }
+
+    private static void writeStoredEntry(ZipArchiveOutputStream zos, String name, byte[] content) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+        zos.putArchiveEntry(entry);
+        zos.write(content);
+        zos.closeArchiveEntry();
+    }
+
 }
@@ -1,17 +1,25 @@
 package com.read.duolingo.web.controller;
 
 import com.read.duolingo.service.TranslateService;
+import com.read.duolingo.service.progress.ProgressEventBus;
+import com.read.duolingo.service.scheduler.OfflineJobScheduler;
+import com.read.duolingo.utils.DownloadUtil;
 import com.read.duolingo.web.dto.Response;
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @RestController
@@ -20,6 +28,12 @@ public class TranslateController {
 
     @Resource
     private TranslateService translateService;
+    @Resource
+    private OfflineJobScheduler offlineJobScheduler;
+    @Resource
+    private ProgressEventBus progressEventBus;
+
+    private static final long STREAM_TIMEOUT = 120000;
 
     /**
      * 离线翻译提交
@@ -37,6 +51,72 @@ public class TranslateController {
             return Response.fail(500, e.getMessage());
         }
     }
+    /**
+     * 分片上传：创建离线翻译任务，返回任务id
+     * 之后按顺序 PUT 分片，断线后先查询已上传大小再继续，全部上传后调用 complete 提交翻译
+     * @param fileSize 文件总字节数
+     */
+    @CrossOrigin
+    @PostMapping("/offline/upload/init")
+    public Response<Long> initChunkedUpload(@RequestParam("langCode") String langCode,
+                                            @RequestParam("fileName") String fileName,
+                                            @RequestParam("fileSize") long fileSize) {
+        try {
+            return Response.success(translateService.initChunkedUpload(langCode, fileName, fileSize));
+        } catch (Exception e) {
+            log.error("init chunked upload error", e);
+            return Response.fail(500, e.getMessage());
+        }
+    }
+
+    /**
+     * 分片上传：请求体为分片原始字节，offset 为分片在文件中的起始位置
+     * 返回已上传的字节数，offset 与已上传大小不一致时不写入，客户端从返回值继续
+     */
+    @CrossOrigin
+    @PutMapping(value = "/offline/upload/chunk", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Response<Long> uploadChunk(@RequestParam Long offlineTranslateTempId,
+                                      @RequestParam long offset,
+                                      HttpServletRequest request) {
+        try {
+            return Response.success(translateService.appendUploadChunk(offlineTranslateTempId, offset, request.getInputStream()));
+        } catch (Exception e) {
+            log.error("upload chunk error, offlineTranslateTempId={}, offset={}", offlineTranslateTempId, offset, e);
+            return Response.fail(500, e.getMessage());
+        }
+    }
+
+    /**
+     * 分片上传：查询已上传的字节数
+     */
+    @CrossOrigin
+    @GetMapping("/offline/upload/status")
+    public Response<Long> queryUploadedSize(@RequestParam Long offlineTranslateTempId) {
+        try {
+            return Response.success(translateService.getUploadedSize(offlineTranslateTempId));
+        } catch (Exception e) {
+            log.error("query uploaded size error", e);
+            return Response.fail(500, e.getMessage());
+        }
+    }
+
+    /**
+     * 分片上传：上传完成，校验后提交翻译
+     * @param sha256 文件的 SHA-256，可选，传了会校验
+     */
+    @CrossOrigin
+    @PostMapping("/offline/upload/complete")
+    public Response<Long> completeChunkedUpload(@RequestParam Long offlineTranslateTempId,
+                                                @RequestParam(value = "sha256", required = false) String sha256) {
+        try {
+            translateService.completeChunkedUpload(offlineTranslateTempId, sha256);
+            return Response.success(offlineTranslateTempId);
+        } catch (Exception e) {
+            log.error("complete chunked upload error", e);
+            return Response.fail(500, e.getMessage());
+        }
+    }
+
     /**
      * 查询离线翻译书籍进度，0-100
      */
@@ -51,8 +131,19 @@ public class TranslateController {
         }
     }
 
+    /**
+     * 订阅离线翻译进度（SSE），进度或状态变化时推送
+     * 事件：progress-进度变化，done-已完成或失败，error-任务不存在
+     */
+    @CrossOrigin
+    @GetMapping(value = "/offline/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeOfflineTranslate(@RequestParam Long offlineTranslateTempId) {
+        return progressEventBus.subscribe(offlineTranslateTempId);
+    }
+
     /**
      * 在线翻译
+     * translator=AUTO 时按各引擎的延迟和错误率自动选择，并对慢请求做对冲
      */
     @CrossOrigin
     @RequestMapping("/online/invoke")
@@ -69,27 +160,89 @@ public class TranslateController {
     }
 
     /**
-     * 下载翻译后的文件
+     * 在线流式翻译（SSE），译文边生成边推送
+     * 事件：delta-增量译文，done-结束，error-失败
+     */
+    @CrossOrigin
+    @GetMapping(value = "/online/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOnlineTranslate(@RequestParam("source") String source,
+                                            @RequestParam("langCode") String langCode,
+                                            @RequestParam(value = "translator", required = false, defaultValue = "LOCAL_SEED_X") String translator) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT);
+        try {
+            // 等待 tokens 和生成都是异步的，不占用请求线程；增量译文在引擎执行器的线程上推送
+            translateService.streamTranslate(source, langCode, translator, delta -> {
+                try {
+                    emitter.send(SseEmitter.event().name("delta").data(delta));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).whenComplete((v, e) -> {
+                if (e != null) {
+                    log.error("online stream translate error", e);
+                    sendError(emitter, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    return;
+                }
+                try {
+                    emitter.send(SseEmitter.event().name("done").data(""));
+                    emitter.complete();
+                } catch (Exception ex) {
+                    log.error("online stream translate error", ex);
+                    sendError(emitter, ex);
+                }
+            });
+        } catch (Exception e) {
+            log.error("online stream translate submit error", e);
+            sendError(emitter, e);
+        }
+        return emitter;
+    }
+
+    private void sendError(SseEmitter emitter, Throwable e) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(String.valueOf(e.getMessage())));
+            emitter.complete();
+        } catch (Exception ex) {
+            emitter.completeWithError(ex);
+        }
+    }
+
+    /**
+     * 运行指标，翻译记忆命中率等
+     */
+    @CrossOrigin
+    @GetMapping("/metrics")
+    public Response<Map<String, Object>> metrics() {
+        try {
+            Map<String, Object> metrics = translateService.getMetrics();
+            metrics.put("offlineScheduler", offlineJobScheduler.getStats());
+            metrics.put("progressSubscribers", progressEventBus.getStats());
+            return Response.success(metrics);
+        } catch (Exception e) {
+            log.error("query metrics error", e);
+            return Response.fail(500, e.getMessage());
+        }
+    }
+
+    /**
+     * 下载翻译后的文件，支持 Range 断点续传和 ETag 缓存校验
      * @param offlineTranslateTempId 离线翻译任务id
      * @param response HTTP响应对象
      */
     @CrossOrigin
     @GetMapping("/download")
-    public void download(@RequestParam Long offlineTranslateTempId, HttpServletResponse response) {
+    public void download(@RequestParam Long offlineTranslateTempId, HttpServletRequest request, HttpServletResponse response) {
         try {
             // 获取文件绝对路径
             String filePath = translateService.getDownloadPath(offlineTranslateTempId);
-            File file = new File(filePath);
-
-            // 设置响应头（告知浏览器这是一个需要下载的文件）
             // epub标准MIME类型
-            response.setContentType("application/epub+zip");
-            response.setHeader("Content-Disposition", "attachment; filename=" + file.getName());
-
-            // 将文件内容写入响应流
-            Files.copy(file.toPath(), response.getOutputStream());
+            DownloadUtil.sendFile(request, response, Paths.get(filePath), "application/epub+zip");
         } catch (Exception e) {
             log.error("文件下载失败, offlineTranslateTempId={}", offlineTranslateTempId, e);
+            if (response.isCommitted()) {
+                return;
+            }
+            response.reset();
             response.setStatus(500);
             try {
                 response.getWriter().write("下载失败: " + e.getMessage());
@@ -0,0 +1,146 @@
+package com.read.duolingo.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 基准测试用的合成语料，固定随机种子，离线生成，每次运行内容一致
+ */
+public class BenchmarkCorpus {
+
+    private static final String CHINESE_CHARS =
+            "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发年动同工也能下过子说产种面而方后多定行学法所民得经十三之进着等部度家电力里如水化高自二理起小物现实加量都两体制机当使点从业本去把性好应开它合还因由其些然前外天政四日那社义事平形相全表间样与关各重新线内数正心反你明看原又么利比或但质气第向道命此变条只没结解问意建月公无系军很情者最立代想已通并提直题党程展五果料象员革位入常文总次品式活设及管特件长求老头基资边流路级少图山统接知较将组见计别她手角期根论运农指几九区强放决西被干做必战先回则任取据处队南给色光门即保治北造百规热领七海口东导器压志世金增争济阶油思术极交受联什认六共权收证改清己美再采转更单风切打白教速花带安场身车例真务具万每目至达走积示议声报斗完类八离华名确才科张信马节话米整空元况今集温传土许步群广石记需段研界拉林律叫且究观越织装影算低持音众书布复容儿须际商非验连断深难近矿千周委素技备半办青省列习响约支般史感劳便团往酸历市克何除消构府称太准精值号率族维划选标写存候毛亲快效斯院查江型眼王按格养易置派层片始却专状育厂京识适属圆包火住调满县局照参红细引听该铁价严";
+
+    private static final String XHTML_HEAD = """
+            <?xml version="1.0" encoding="utf-8"?>
+            <!DOCTYPE html>
+            <html xmlns="http://www.w3.org/1999/xhtml" xmlns:epub="http://www.idpf.org/2007/ops">
+            <head><title>第%d章</title><link rel="stylesheet" type="text/css" href="../Styles/style.css"/></head>
+            <body>
+            <h2 class="chapter-title">第%d章</h2>
+            """;
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * 生成一个章节的 XHTML
+     * @param paragraphs 段落数
+     */
+    public static String chapter(int index, int paragraphs, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(paragraphs * 160);
+        sb.append(String.format(XHTML_HEAD, index, index));
+        for (int i = 0; i < paragraphs; i++) {
+            sb.append("<div class=\"section\"><p>").append(sentence(random, 20 + random.nextInt(120))).append("</p></div>\n");
+            if (i % 40 == 39) {
+                sb.append("<p><img src=\"../Images/img").append(i).append(".jpg\" alt=\"\"/></p>\n");
+            }
+        }
+        sb.append("</body>\n</html>\n");
+        return sb.toString();
+    }
+
+    /**
+     * 生成一段中文文本，带少量标点和英文
+     */
+    public static String sentence(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length + 8);
+        for (int i = 0; i < length; i++) {
+            int r = random.nextInt(100);
+            if (r < 6) {
+                sb.append('，');
+            } else if (r < 8) {
+                sb.append("“").append(CHINESE_CHARS.charAt(random.nextInt(CHINESE_CHARS.length()))).append("”");
+            } else if (r < 9) {
+                sb.append(" EPUB ");
+            } else {
+                sb.append(CHINESE_CHARS.charAt(random.nextInt(CHINESE_CHARS.length())));
+            }
+        }
+        return sb.append('。').toString();
+    }
+
+    /**
+     * 多段文本
+     */
+    public static List<String> sentences(int count, int length, long seed) {
+        Random random = new Random(seed);
+        List<String> sentences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sentences.add(sentence(random, length));
+        }
+        return sentences;
+    }
+
+    /**
+     * 生成一本 EPUB：mimetype、容器/OPF、样式、chapters 个章节、images 张不可压缩的图片
+     */
+    public static Path epub(Path dir, int chapters, int paragraphsPerChapter, int images, int imageBytes) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve("book-" + chapters + "x" + paragraphsPerChapter + ".epub");
+        Random random = new Random(chapters * 31L + paragraphsPerChapter);
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(file))) {
+            byte[] mimetype = "application/epub+zip".getBytes(StandardCharsets.US_ASCII);
+            ZipEntry mimetypeEntry = new ZipEntry("mimetype");
+            mimetypeEntry.setMethod(ZipEntry.STORED);
+            mimetypeEntry.setSize(mimetype.length);
+            CRC32 crc = new CRC32();
+            crc.update(mimetype);
+            mimetypeEntry.setCrc(crc.getValue());
+            zos.putNextEntry(mimetypeEntry);
+            zos.write(mimetype);
+            zos.closeEntry();
+
+            write(zos, "META-INF/container.xml", """
+                    <?xml version="1.0"?>
+                    <container version="1.0" xmlns="urn:oasis:names:tc:opendocument:xmlns:container">
+                      <rootfiles><rootfile full-path="OEBPS/content.opf" media-type="application/oebps-package+xml"/></rootfiles>
+                    </container>
+                    """.getBytes(StandardCharsets.UTF_8));
+            StringBuilder manifest = new StringBuilder();
+            for (int i = 1; i <= chapters; i++) {
+                manifest.append("<item id=\"c").append(i).append("\" href=\"Text/chapter").append(i).append(".xhtml\" media-type=\"application/xhtml+xml\"/>\n");
+            }
+            write(zos, "OEBPS/content.opf", ("<?xml version=\"1.0\"?><package version=\"3.0\"><manifest>\n" + manifest + "</manifest></package>")
+                    .getBytes(StandardCharsets.UTF_8));
+            write(zos, "OEBPS/Styles/style.css", "p { text-indent: 2em; }\n".repeat(50).getBytes(StandardCharsets.UTF_8));
+            for (int i = 1; i <= chapters; i++) {
+                write(zos, "OEBPS/Text/chapter" + i + ".xhtml", chapter(i, paragraphsPerChapter, i).getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < images; i++) {
+                byte[] image = new byte[imageBytes];
+                random.nextBytes(image);
+                write(zos, "OEBPS/Images/img" + i + ".jpg", image);
+            }
+        }
+        return file;
+    }
+
+    public static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static void write(ZipOutputStream zos, String name, byte[] content) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(content);
+        zos.closeEntry();
+    }
+}
@@ -0,0 +1,62 @@
+package com.read.duolingo.benchmark;
+
+import com.read.duolingo.utils.ZipUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EPUB 打包：解压到目录 / 目录重新压缩 / 流式转换（原始数据直拷 + 章节原样写回）
+ * 合成书：chapters 个章节（每章 200 段）+ 40 张 200KB 的不可压缩图片，接近一本带插图的小说
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EpubZipBenchmark {
+
+    @Param({"20", "100"})
+    private int chapters;
+
+    private Path workDir;
+    private Path epub;
+    private Path unzipDir;
+    private Path zipSourceDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workDir = Files.createTempDirectory("epub-bench");
+        epub = BenchmarkCorpus.epub(workDir, chapters, 200, 40, 200 * 1024);
+        zipSourceDir = workDir.resolve("source");
+        ZipUtil.unzipEpub(epub.toString(), zipSourceDir);
+        unzipDir = workDir.resolve("unzip");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkCorpus.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public void unzipEpub() throws IOException {
+        // unzipEpub 会覆盖已存在的文件，多次迭代复用同一个目录
+        ZipUtil.unzipEpub(epub.toString(), unzipDir);
+    }
+
+    @Benchmark
+    public void zipEpub() throws IOException {
+        ZipUtil.zipEpub(zipSourceDir, workDir.resolve("zipped.epub").toString());
+    }
+
+    @Benchmark
+    public void transformEpub() throws IOException {
+        ZipUtil.transformEpub(epub.toString(), workDir.resolve("transformed.epub").toString(),
+                name -> name.endsWith(".xhtml"), 4, (name, content) -> CompletableFuture.completedFuture(content));
+    }
+}
@@ -0,0 +1,103 @@
+package com.read.duolingo.benchmark;
+
+import com.read.duolingo.utils.HtmlUtil;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 章节文本提取：旧的逐节点回溯祖先 + 正则 vs 单次 NodeTraversor 遍历 + 字符范围判断
+ * 构造大章节：paragraphs 个段落，每个段落嵌套 depth 层 div，夹杂已翻译的容器和 script/pre
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlExtractionBenchmark {
+
+    private static final Pattern CHINESE_PATTERN = Pattern.compile("[\\u4e00-\\u9fa5]");
+    private static final Pattern SKIP_TAGS = Pattern.compile("(script|style|code|pre)", Pattern.CASE_INSENSITIVE);
+
+    @Param({"2000"})
+    private int paragraphs;
+
+    @Param({"5", "30"})
+    private int depth;
+
+    private Element body;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder html = new StringBuilder("<html><head></head><body>");
+        for (int i = 0; i < paragraphs; i++) {
+            html.append("<div>".repeat(depth));
+            if (i % 10 == 0) {
+                html.append("<div class=\"translation-container\"><span>已经翻译过的段落</span><div>translated</div></div>");
+            } else if (i % 25 == 0) {
+                html.append("<pre>代码块里的中文不翻译</pre><script>var a = '中文';</script>");
+            } else {
+                html.append("<p>第").append(i).append("段，夜色渐深，他推开窗，看见远处的灯火一盏一盏熄灭。</p>")
+                        .append("<p>English only paragraph ").append(i).append(".</p>");
+            }
+            html.append("</div>".repeat(depth));
+        }
+        html.append("</body></html>");
+        Document doc = Jsoup.parse(html.toString());
+        body = doc.body();
+    }
+
+    @Benchmark
+    public List<TextNode> legacyCollect() {
+        List<TextNode> textNodes = new ArrayList<>();
+        legacyCollectTextNodes(body, textNodes);
+        return textNodes.stream().filter(node -> !legacyIsProcessed(node)).toList();
+    }
+
+    @Benchmark
+    public List<TextNode> singlePassCollect() {
+        return HtmlUtil.collectTextNodes(body);
+    }
+
+    // ---- 优化前的实现，作为基线 ----
+
+    private static boolean legacyIsProcessed(Node node) {
+        if (node instanceof Element element) {
+            return element.hasClass("translation-container") ||
+                    element.parents().stream().anyMatch(e -> e.hasClass("translation-container"));
+        }
+        return false;
+    }
+
+    private static void legacyCollectTextNodes(Element element, List<TextNode> textNodes) {
+        if (legacyShouldSkipElement(element) || legacyIsProcessed(element)) {
+            return;
+        }
+        for (Node node : element.childNodes()) {
+            if (node instanceof Element childElement) {
+                legacyCollectTextNodes(childElement, textNodes);
+            } else if (node instanceof TextNode textNode) {
+                if (legacyIsProcessed(textNode)) continue;
+                String text = textNode.getWholeText().trim();
+                if (!text.isEmpty() && CHINESE_PATTERN.matcher(text).find()) {
+                    textNodes.add(textNode);
+                }
+            }
+        }
+    }
+
+    private static boolean legacyShouldSkipElement(Element element) {
+        return SKIP_TAGS.matcher(element.tagName()).matches() ||
+                element.hasClass("translation-container") ||
+                element.parents().stream().anyMatch(e -> e.hasClass("translation-container"));
+    }
+}
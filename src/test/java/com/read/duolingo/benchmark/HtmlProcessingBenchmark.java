@@ -0,0 +1,42 @@
+package com.read.duolingo.benchmark;
+
+import com.read.duolingo.utils.HtmlUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * 单章节处理：解析 XHTML、提取待翻译文本、回填译文、序列化
+ * small 约 30 段（短章节），large 约 3000 段（整本书合成一个文件的情况）
+ * 翻译函数直接返回固定译文，只测 HTML 处理本身
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlProcessingBenchmark {
+
+    @Param({"small", "large"})
+    private String size;
+
+    private String content;
+
+    private final BiFunction<Integer, List<String>, List<String>> stubTranslate =
+            (progress, sources) -> sources.stream().map(source -> "translated text").toList();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int paragraphs = "small".equals(size) ? 30 : 3000;
+        content = BenchmarkCorpus.chapter(1, paragraphs, 42);
+    }
+
+    @Benchmark
+    public String processHtmlFile() throws IOException {
+        return HtmlUtil.processHtmlFile(content, 0, stubTranslate);
+    }
+}
@@ -0,0 +1,63 @@
+package com.read.duolingo.benchmark;
+
+import com.read.duolingo.service.token.BpeTokenEstimator;
+import com.read.duolingo.service.token.CharClassTokenEstimator;
+import com.read.duolingo.service.translators.LocalSeedXTranslator;
+import com.read.duolingo.utils.StringUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次请求都会走的小函数：SeedX 的 tokens 计算（快速估算 vs BPE 精确计数）、请求体 JSON 转义
+ * short 对应一句话的在线翻译，long 对应离线翻译的长段落
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenAndJsonBenchmark {
+
+    @Param({"short", "long"})
+    private String length;
+
+    private LocalSeedXTranslator translator;
+    private CharClassTokenEstimator fastEstimator;
+    private BpeTokenEstimator bpeEstimator;
+    private String source;
+    private String prompt;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // 只用到 tokens 估算，不需要 Spring 容器
+        translator = new LocalSeedXTranslator();
+        fastEstimator = new CharClassTokenEstimator(0.05);
+        bpeEstimator = new BpeTokenEstimator();
+        source = BenchmarkCorpus.sentence(new Random(7), "short".equals(length) ? 30 : 1500);
+        // 与 LocalSeedXTranslator.buildPrompt 的格式一致
+        prompt = "translate the following:" + StringUtil.escapeJson(source) + "<en>";
+    }
+
+    @Benchmark
+    public int calculateTokenCost() {
+        return translator.calculateTokenCost(prompt);
+    }
+
+    @Benchmark
+    public int fastEstimate() {
+        return fastEstimator.countTokens(prompt);
+    }
+
+    @Benchmark
+    public int bpeCount() {
+        return bpeEstimator.countTokens(prompt);
+    }
+
+    @Benchmark
+    public String escapeJson() {
+        return StringUtil.escapeJson(source);
+    }
+}
@@ -0,0 +1,94 @@
+package com.read.duolingo.benchmark;
+
+import com.read.duolingo.enums.TranslatorType;
+import com.read.duolingo.service.translators.Translator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Translator 的分发开销：一次翻译 sources 条文本
+ * translate 每条文本一个 future，translateBatch 按批大小分组后每组一个 future
+ * 引擎是进程内的桩实现，在固定大小的线程池上模拟 latencyMicros 的网络延迟
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TranslatorFanOutBenchmark {
+
+    @Param({"64", "1024"})
+    private int sources;
+
+    @Param({"0", "200"})
+    private long latencyMicros;
+
+    private ExecutorService executor;
+    private StubTranslator translator;
+    private List<String> texts;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = Executors.newFixedThreadPool(32);
+        translator = new StubTranslator(executor, TimeUnit.MICROSECONDS.toNanos(latencyMicros));
+        texts = BenchmarkCorpus.sentences(sources, 40, 11);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public List<String> translate() {
+        return translator.translate(texts, "en", false);
+    }
+
+    @Benchmark
+    public List<String> translateBatch() {
+        return translator.translateBatch(texts, "en", false);
+    }
+
+    private record StubTranslator(ExecutorService executor, long latencyNanos) implements Translator {
+
+        @Override
+        public TranslatorType getTranslatorType() {
+            return TranslatorType.LOCAL_SEED_X;
+        }
+
+        @Override
+        public CompletableFuture<String> asyncTranslate(String source, String langCode, boolean isOnline) {
+            return CompletableFuture.supplyAsync(() -> {
+                simulateLatency();
+                return source;
+            }, executor);
+        }
+
+        @Override
+        public int getBatchMaxSize() {
+            return 16;
+        }
+
+        @Override
+        public CompletableFuture<List<String>> asyncTranslateBatch(List<String> sources, String langCode, boolean isOnline) {
+            // 模拟原生批量接口：一组文本只付一次延迟
+            return CompletableFuture.supplyAsync(() -> {
+                simulateLatency();
+                return List.copyOf(sources);
+            }, executor);
+        }
+
+        private void simulateLatency() {
+            if (latencyNanos > 0) {
+                LockSupport.parkNanos(latencyNanos);
+            }
+        }
+    }
+}
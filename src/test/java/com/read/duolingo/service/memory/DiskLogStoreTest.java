@@ -0,0 +1,114 @@
+package com.read.duolingo.service.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DiskLogStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void putAndReopen() throws IOException {
+        Path file = dir.resolve("store.log");
+        try (DiskLogStore store = new DiskLogStore(file)) {
+            store.put("a", "1");
+            store.put("b", "2");
+            store.put("a", "3");
+            assertEquals("3", store.get("a"));
+            assertEquals(2, store.size());
+        }
+        try (DiskLogStore store = new DiskLogStore(file)) {
+            assertEquals("3", store.get("a"));
+            assertEquals("2", store.get("b"));
+        }
+    }
+
+    @Test
+    void compactKeepsNewestRecordsWithinHalfOfLimit() throws IOException {
+        Path file = dir.resolve("store.log");
+        // 每条记录 8 + 2 + 10 = 20 字节，上限 200 字节
+        try (DiskLogStore store = new DiskLogStore(file, 200)) {
+            for (int i = 0; i < 10; i++) {
+                store.put("k" + i, "value-000" + i);
+            }
+            assertEquals(200, store.fileSize());
+            // 再写一条超过上限，先压缩到只剩最新的 5 条（100 字节）
+            store.put("ka", "value-000a");
+            assertEquals(120, store.fileSize());
+            assertEquals(6, store.size());
+            for (int i = 0; i < 5; i++) {
+                assertNull(store.get("k" + i));
+            }
+            for (int i = 5; i < 10; i++) {
+                assertEquals("value-000" + i, store.get("k" + i));
+            }
+            assertEquals("value-000a", store.get("ka"));
+        }
+        try (DiskLogStore store = new DiskLogStore(file, 200)) {
+            assertEquals(6, store.size());
+            assertEquals("value-0005", store.get("k5"));
+            assertEquals("value-000a", store.get("ka"));
+        }
+        assertFalse(Files.exists(dir.resolve("store.log.compact")));
+    }
+
+    @Test
+    void failedPutRollsBackTornRecord() throws IOException {
+        Path file = dir.resolve("store.log");
+        try (FailingStore store = new FailingStore(file)) {
+            store.put("a", "1");
+            long size = store.fileSize();
+
+            // 写了几个字节后失败
+            store.failAfterBytes = 5;
+            store.put("b", "2");
+            assertEquals(size, store.fileSize());
+            assertEquals(size, Files.size(file));
+            assertFalse(store.containsKey("b"));
+            assertNull(store.get("b"));
+
+            store.failAfterBytes = -1;
+            store.put("c", "3");
+            assertEquals("3", store.get("c"));
+        }
+        // 残缺记录已回滚，重启后其后写入的记录不会被当作尾部截掉
+        try (DiskLogStore store = new DiskLogStore(file)) {
+            assertEquals("1", store.get("a"));
+            assertNull(store.get("b"));
+            assertEquals("3", store.get("c"));
+        }
+    }
+
+    private static class FailingStore extends DiskLogStore {
+        private int failAfterBytes = -1;
+
+        private FailingStore(Path file) throws IOException {
+            super(file);
+        }
+
+        @Override
+        int write(ByteBuffer buffer, long position) throws IOException {
+            if (failAfterBytes < 0) {
+                return super.write(buffer, position);
+            }
+            if (failAfterBytes == 0) {
+                throw new IOException("No space left on device");
+            }
+            ByteBuffer slice = buffer.slice(buffer.position(), Math.min(failAfterBytes, buffer.remaining()));
+            int written = super.write(slice, position);
+            buffer.position(buffer.position() + written);
+            failAfterBytes -= written;
+            return written;
+        }
+    }
+}
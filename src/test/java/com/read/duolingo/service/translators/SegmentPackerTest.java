@@ -0,0 +1,74 @@
+package com.read.duolingo.service.translators;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentPackerTest {
+
+    @Test
+    void packGroupsByTokenBudgetAndSegmentCount() {
+        List<String> sources = List.of("aa", "bb", "cc", "dd", "ee");
+        // 每段 2 tokens，预算 5 tokens：每组最多两段
+        assertEquals(List.of(2, 4, 5), SegmentPacker.pack(sources, String::length, 5, 10, 100));
+        // 段数上限 3
+        assertEquals(List.of(3, 5), SegmentPacker.pack(sources, String::length, 100, 3, 100));
+    }
+
+    @Test
+    void packPutsOversizedSegmentAlone() {
+        List<String> sources = List.of("a", "b", "long-segment", "c");
+        assertEquals(List.of(2, 3, 4), SegmentPacker.pack(sources, String::length, 100, 10, 5));
+    }
+
+    @Test
+    void joinAndSplitRoundTrip() {
+        List<String> segments = List.of("first", "second", "third");
+        String joined = SegmentPacker.join(segments, s -> s);
+        assertEquals("[1] first\n[2] second\n[3] third", joined);
+        assertEquals(segments, SegmentPacker.split(joined, 3));
+    }
+
+    @Test
+    void splitToleratesBlankLinesBetweenSegments() {
+        // 模型在段与段之间空一行时仍能拆分，合并prompt的stop里不能有空行，否则生成在第一段后就结束了
+        assertEquals(List.of("first", "second", "third"), SegmentPacker.split("[1] first\n\n[2] second\n\n\n[3] third\n", 3));
+        assertFalse(Arrays.asList(LocalSeedXTranslator.SeedXCompletionRequest.PACKED_STOP).contains("\n\n"));
+        assertTrue(Arrays.asList(LocalSeedXTranslator.SeedXCompletionRequest.DEFAULT_STOP).contains("\n\n"));
+    }
+
+    @Test
+    void splitKeepsMarkersInsideText() {
+        // 只有行首的标记才算分隔，正文中的 [n] 保留
+        String text = "[1] see note [2] below\n[2] second [1] part";
+        assertEquals(List.of("see note [2] below", "second [1] part"), SegmentPacker.split(text, 2));
+    }
+
+    @Test
+    void splitTreatsUnexpectedLineStartMarkerAsText() {
+        // 行首的 [7] 编号对不上，当作上一段的正文
+        String text = "[1] first\n[7] footnote\n[2] second";
+        assertEquals(List.of("first\n[7] footnote", "second"), SegmentPacker.split(text, 2));
+    }
+
+    @Test
+    void splitRejectsOutOfOrderMarkers() {
+        assertNull(SegmentPacker.split("[2] second\n[1] first", 2));
+        assertNull(SegmentPacker.split("[1] first\n[3] third\n[2] second", 3));
+    }
+
+    @Test
+    void splitRejectsMissingOrEmptySegments() {
+        assertNull(SegmentPacker.split("[1] first\n[3] third", 3));
+        assertNull(SegmentPacker.split("[1] first\n[2] second", 3));
+        assertNull(SegmentPacker.split("[1] first\n[2]\n[3] third", 3));
+        assertNull(SegmentPacker.split("no markers at all", 1));
+        assertNull(SegmentPacker.split(null, 1));
+    }
+}
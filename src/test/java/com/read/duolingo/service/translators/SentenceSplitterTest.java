@@ -0,0 +1,55 @@
+package com.read.duolingo.service.translators;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class SentenceSplitterTest {
+
+    @Test
+    void splitsAtSentenceEndsAndMergesUpToLimit() {
+        String text = "第一句。第二句！第三句？";
+        assertEquals(List.of("第一句。第二句！", "第三句？"), SentenceSplitter.split(text, String::length, 8));
+        assertEquals(List.of(text), SentenceSplitter.split(text, String::length, 100));
+    }
+
+    @Test
+    void keepsClosingQuoteWithPreviousSentence() {
+        String text = "他说：“你好。”然后走了。";
+        assertEquals(List.of("他说：“你好。”", "然后走了。"), SentenceSplitter.split(text, String::length, 8));
+    }
+
+    @Test
+    void latinPeriodNeedsFollowingWhitespace() {
+        String text = "Version 1.5 is out. It is faster.";
+        assertEquals(List.of("Version 1.5 is out. ", "It is faster."), SentenceSplitter.split(text, String::length, 20));
+    }
+
+    @Test
+    void fallsBackToClausesForLongSentence() {
+        String text = "一二三四，五六七八，九十。";
+        assertEquals(List.of("一二三四，", "五六七八，", "九十。"), SentenceSplitter.split(text, String::length, 5));
+    }
+
+    @Test
+    void hardSplitDoesNotBreakSurrogatePairs() {
+        // 没有标点，只能按字符数硬切；每个 emoji 是一个代理对，第一刀正好落在第一个代理对中间
+        String text = "a😀😀😀";
+        List<String> chunks = SentenceSplitter.split(text, String::length, 3);
+        assertEquals(List.of("a😀", "😀", "😀"), chunks);
+        for (String chunk : chunks) {
+            assertFalse(Character.isLowSurrogate(chunk.charAt(0)), chunk);
+            assertFalse(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)), chunk);
+        }
+    }
+
+    @Test
+    void joinUsesSeparatorByLanguage() {
+        List<String> translations = List.of(" First. ", "", "Second. ");
+        assertEquals("First. Second.", SentenceSplitter.join(translations, "en"));
+        assertEquals("第一。第二。", SentenceSplitter.join(List.of("第一。", "第二。"), "zh"));
+    }
+}
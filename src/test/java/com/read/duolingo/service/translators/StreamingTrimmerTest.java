@@ -0,0 +1,50 @@
+package com.read.duolingo.service.translators;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingTrimmerTest {
+
+    @Test
+    void holdsBackMarkerPrefixAndStopsAtMarker() {
+        List<String> deltas = new ArrayList<>();
+        LocalSeedXTranslator.StreamingTrimmer trimmer = new LocalSeedXTranslator.StreamingTrimmer(deltas::add);
+        trimmer.append("你好（");
+        // 末尾的 "（" 可能是截断标记 "（注" 的前缀，先不输出
+        assertEquals(List.of("你好"), deltas);
+        trimmer.append("注：解释");
+        assertTrue(trimmer.isStopped());
+        assertEquals("你好", trimmer.finish());
+        assertEquals(List.of("你好"), deltas);
+    }
+
+    @Test
+    void throwingSinkStopsWithoutPropagating() {
+        List<String> deltas = new ArrayList<>();
+        LocalSeedXTranslator.StreamingTrimmer trimmer = new LocalSeedXTranslator.StreamingTrimmer(delta -> {
+            deltas.add(delta);
+            // 模拟客户端已断开
+            throw new UncheckedIOException(new IOException("Broken pipe"));
+        });
+        assertFalse(trimmer.isStopped());
+        assertNull(trimmer.getSinkFailure());
+
+        trimmer.append("hello");
+        assertTrue(trimmer.isStopped());
+        assertInstanceOf(UncheckedIOException.class, trimmer.getSinkFailure());
+
+        // 停止后不再回调
+        trimmer.append(" world");
+        assertEquals(List.of("hello"), deltas);
+    }
+}
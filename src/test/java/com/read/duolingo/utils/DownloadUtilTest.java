@@ -0,0 +1,97 @@
+package com.read.duolingo.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DownloadUtilTest {
+
+    private static final long LENGTH = 10;
+
+    @Test
+    void parsesExplicitRange() {
+        assertArrayEquals(new long[]{2, 5}, DownloadUtil.parseRange("bytes=2-5", LENGTH));
+        // 结束位置超出文件时截到文件末尾
+        assertArrayEquals(new long[]{8, 9}, DownloadUtil.parseRange("bytes=8-100", LENGTH));
+    }
+
+    @Test
+    void parsesOpenEndedRange() {
+        assertArrayEquals(new long[]{4, 9}, DownloadUtil.parseRange("bytes=4-", LENGTH));
+    }
+
+    @Test
+    void parsesSuffixRange() {
+        assertArrayEquals(new long[]{7, 9}, DownloadUtil.parseRange("bytes=-3", LENGTH));
+        // 后缀长度超过文件大小时返回整个文件
+        assertArrayEquals(new long[]{0, 9}, DownloadUtil.parseRange("bytes=-100", LENGTH));
+    }
+
+    @Test
+    void ignoresMultiRangeAndInvalidSyntax() {
+        assertEquals(0, DownloadUtil.parseRange("bytes=0-1,4-5", LENGTH).length);
+        assertEquals(0, DownloadUtil.parseRange("items=0-1", LENGTH).length);
+        assertEquals(0, DownloadUtil.parseRange("bytes=abc", LENGTH).length);
+        assertEquals(0, DownloadUtil.parseRange("bytes=a-b", LENGTH).length);
+        assertEquals(0, DownloadUtil.parseRange("bytes=5-3", LENGTH).length);
+    }
+
+    @Test
+    void rejectsUnsatisfiableRange() {
+        assertNull(DownloadUtil.parseRange("bytes=10-", LENGTH));
+        assertNull(DownloadUtil.parseRange("bytes=20-30", LENGTH));
+        assertNull(DownloadUtil.parseRange("bytes=-0", LENGTH));
+        assertNull(DownloadUtil.parseRange("bytes=0-", 0));
+    }
+
+    @Test
+    void sendFileServesPartialContent(@TempDir Path dir) throws IOException {
+        Path file = write(dir);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        DownloadUtil.sendFile(request, response, file, "application/epub+zip");
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("2345", response.getContentAsString());
+    }
+
+    @Test
+    void sendFileIgnoresReversedRange(@TempDir Path dir) throws IOException {
+        Path file = write(dir);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-3");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        DownloadUtil.sendFile(request, response, file, "application/epub+zip");
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    void sendFileRejectsUnsatisfiableRange(@TempDir Path dir) throws IOException {
+        Path file = write(dir);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        DownloadUtil.sendFile(request, response, file, "application/epub+zip");
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    private static Path write(Path dir) throws IOException {
+        Path file = dir.resolve("book.epub");
+        Files.writeString(file, "0123456789", StandardCharsets.US_ASCII);
+        return file;
+    }
+}